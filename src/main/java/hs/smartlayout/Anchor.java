@@ -21,4 +21,32 @@ public enum Anchor {
   public boolean isSouth() {
     return this == SOUTH || this == SOUTH_WEST || this == SOUTH_EAST;
   }
+
+  /**
+   * Returns the horizontal offset of an object of the given width within the given space.
+   */
+  public int getOffsetX(int sizeX, int spaceX) {
+    if(isEast()) {
+      return spaceX - sizeX;
+    }
+    else if(!isWest()) {
+      return (spaceX - sizeX) / 2;
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns the vertical offset of an object of the given height within the given space.
+   */
+  public int getOffsetY(int sizeY, int spaceY) {
+    if(isSouth()) {
+      return spaceY - sizeY;
+    }
+    else if(!isNorth()) {
+      return (spaceY - sizeY) / 2;
+    }
+
+    return 0;
+  }
 }
@@ -1,6 +1,10 @@
 package hs.smartlayout;
 
 import java.awt.Component;
+import java.awt.Dimension;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 
 /**
  * Represents an object at grid location x,y used by {@link SmartLayout}
@@ -8,10 +12,21 @@ import java.awt.Component;
 public class Block {
   private final Component component;
   private final Constraints constraints;
-  private final LayoutConstraints layoutConstraints = new LayoutConstraints();
   private final int x;
   private final int y;
 
+  /*
+   * The sizes and weights of the last measurement.
+   */
+
+  private boolean measured;
+  private int minWidth;
+  private int minHeight;
+  private int maxWidth;
+  private int maxHeight;
+  private double weightX;
+  private double weightY;
+
   public Block(Component component, Constraints constraints, int x, int y) {
     if(component == null) {
       throw new IllegalArgumentException("component cannot be null");
@@ -34,8 +49,14 @@ public class Block {
     return constraints;
   }
 
+  /**
+   * Returns the sizes of this block as the layout uses them.
+   *
+   * @deprecated the layout no longer keeps these for each block; use the size getters instead
+   */
+  @Deprecated
   public LayoutConstraints getLayoutConstraints() {
-    return layoutConstraints;
+    return new LayoutConstraints(this);
   }
 
   public int getX() {
@@ -46,32 +67,136 @@ public class Block {
     return y;
   }
 
+  /**
+   * Determines the sizes and weights of this block, querying the preferred and maximum size of
+   * the component at most once each, and only when the constraints do not override them.  While
+   * a {@link LayoutSession} is open the sizes are taken from the session.  The results are
+   * returned by the size getters until this block is measured again; the getters measure the
+   * block themselves if it was never measured.
+   *
+   * @return true if any of the sizes or weights differ from the previous measurement
+   */
+  public boolean measure() {
+    Dimension preferredSize = constraints.getMinWidth() == Constraints.UNSET || constraints.getMinHeight() == Constraints.UNSET ? LayoutSession.getPreferredSize(component) : null;
+    Dimension maximumSize = constraints.getMaxWidth() == Constraints.UNSET || constraints.getMaxHeight() == Constraints.UNSET ? LayoutSession.getMaximumSize(component) : null;
+
+    int newMinWidth = constraints.getMinWidth() != Constraints.UNSET ? constraints.getMinWidth() : preferredSize.width;
+    int newMinHeight = constraints.getMinHeight() != Constraints.UNSET ? constraints.getMinHeight() : preferredSize.height;
+    int newMaxWidth = constraints.getMaxWidth() != Constraints.UNSET ? constraints.getMaxWidth() : maximumSize.width;
+    int newMaxHeight = constraints.getMaxHeight() != Constraints.UNSET ? constraints.getMaxHeight() : maximumSize.height;
+
+    boolean changed = !measured
+      || newMinWidth != minWidth || newMinHeight != minHeight
+      || newMaxWidth != maxWidth || newMaxHeight != maxHeight
+      || Double.doubleToLongBits(constraints.getWeightX()) != Double.doubleToLongBits(weightX)
+      || Double.doubleToLongBits(constraints.getWeightY()) != Double.doubleToLongBits(weightY);
+
+    measured = true;
+    minWidth = newMinWidth;
+    minHeight = newMinHeight;
+    maxWidth = newMaxWidth;
+    maxHeight = newMaxHeight;
+    weightX = constraints.getWeightX();
+    weightY = constraints.getWeightY();
+
+    return changed;
+  }
+
+  /**
+   * Returns the minimum width determined by the last call to {@link #measure()}.
+   */
   public int getMinWidth() {
-    return constraints.getMinWidth() != Constraints.UNSET ? constraints.getMinWidth() : component.getPreferredSize().width;
+    ensureMeasured();
+
+    return minWidth;
   }
 
+  /**
+   * Returns the minimum height determined by the last call to {@link #measure()}.
+   */
   public int getMinHeight() {
-    return constraints.getMinHeight() != Constraints.UNSET ? constraints.getMinHeight() : component.getPreferredSize().height;
+    ensureMeasured();
+
+    return minHeight;
   }
 
+  /**
+   * Returns the maximum width determined by the last call to {@link #measure()}.
+   */
   public int getMaxWidth() {
-    return constraints.getMaxWidth() != Constraints.UNSET ? constraints.getMaxWidth() : component.getMaximumSize().width;
+    ensureMeasured();
+
+    return maxWidth;
   }
 
+  /**
+   * Returns the maximum height determined by the last call to {@link #measure()}.
+   */
   public int getMaxHeight() {
-    return constraints.getMaxHeight() != Constraints.UNSET ? constraints.getMaxHeight() : component.getMaximumSize().height;
+    ensureMeasured();
+
+    return maxHeight;
   }
 
-  @Override
-  public String toString() {
-    return "Block at (" + x + ", " + y + ") size (" + constraints.getSpanX() + ", " + constraints.getSpanY() + ")";
+  /**
+   * Returns the horizontal weight determined by the last call to {@link #measure()}.
+   */
+  public double getWeightX() {
+    ensureMeasured();
+
+    return weightX;
+  }
+
+  /**
+   * Returns the vertical weight determined by the last call to {@link #measure()}.
+   */
+  public double getWeightY() {
+    ensureMeasured();
+
+    return weightY;
   }
 
+  /**
+   * Returns the horizontal limits of this block as the layout uses them.
+   *
+   * @deprecated use {@link #getMinWidth()}, {@link #getMaxWidth()} and {@link #getWeightX()} instead
+   */
+  @Deprecated
   public LineLimit getLimitsX() {
-    return new LineLimit(layoutConstraints.minWidth.get(), layoutConstraints.minWidth.get(), layoutConstraints.maxWidth.get(), constraints.getWeightX());
+    LayoutConstraints layoutConstraints = getLayoutConstraints();
+
+    return new LineLimit(layoutConstraints.minWidth.get(), layoutConstraints.minWidth.get(), layoutConstraints.maxWidth.get(), getWeightX());
   }
 
+  /**
+   * Returns the vertical limits of this block as the layout uses them.
+   *
+   * @deprecated use {@link #getMinHeight()}, {@link #getMaxHeight()} and {@link #getWeightY()} instead
+   */
+  @Deprecated
   public LineLimit getLimitsY() {
-    return new LineLimit(layoutConstraints.minHeight.get(), layoutConstraints.minHeight.get(), layoutConstraints.maxHeight.get(), constraints.getWeightY());
+    LayoutConstraints layoutConstraints = getLayoutConstraints();
+
+    return new LineLimit(layoutConstraints.minHeight.get(), layoutConstraints.minHeight.get(), layoutConstraints.maxHeight.get(), getWeightY());
+  }
+
+  /*
+   * Returns whether the layout ignores the minimum size of this block, which it does for scroll
+   * panes showing a panel.
+   */
+  boolean ignoresMinimumSize() {
+    // TODO Not sure if this is the idea..
+    return component instanceof JScrollPane && ((JScrollPane)component).getViewport().getView() instanceof JPanel;
+  }
+
+  private void ensureMeasured() {
+    if(!measured) {
+      measure();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Block at (" + x + ", " + y + ") size (" + constraints.getSpanX() + ", " + constraints.getSpanY() + ")";
   }
 }
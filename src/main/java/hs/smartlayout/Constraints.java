@@ -157,24 +157,7 @@ public class Constraints {
   }
 
   public Dimension getAnchorOffset(int sizeX, int sizeY, int spaceX, int spaceY) {
-    int x = 0;
-    int y = 0;
-
-    if(anchor.isEast()) {
-      x = spaceX - sizeX;
-    }
-    else if(!anchor.isWest()) {
-      x = (spaceX - sizeX) / 2;
-    }
-
-    if(anchor.isSouth()) {
-      y = spaceY - sizeY;
-    }
-    else if(!anchor.isNorth()) {
-      y = (spaceY - sizeY) / 2;
-    }
-
-    return new Dimension(x, y);
+    return new Dimension(anchor.getOffsetX(sizeX, spaceX), anchor.getOffsetY(sizeY, spaceY));
   }
 
   public Constraints setWeightX(double wx) {
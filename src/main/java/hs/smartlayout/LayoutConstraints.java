@@ -2,13 +2,37 @@ package hs.smartlayout;
 
 /**
  * Class for storing constraints calculated by the layout engine.
+ *
+ * @deprecated the layout engine keeps the sizes of its cells itself; only
+ *             {@link Block#getLayoutConstraints()} still returns these
  */
+@Deprecated
 class LayoutConstraints {
   LayoutConstraint minWidth = new LayoutConstraint(1);
   LayoutConstraint minHeight = new LayoutConstraint(1);
   LayoutConstraint maxWidth = new LayoutConstraint(Integer.MAX_VALUE);
   LayoutConstraint maxHeight = new LayoutConstraint(Integer.MAX_VALUE);
 
+  LayoutConstraints() {
+  }
+
+  /*
+   * Creates the constraints the layout uses for the given block.
+   */
+  LayoutConstraints(Block block) {
+    minWidth.setIfLarger(block.getMinWidth());
+    minHeight.setIfLarger(block.getMinHeight());
+    maxWidth.setIfSmaller(block.getMaxWidth());
+    maxHeight.setIfSmaller(block.getMaxHeight());
+
+    if(block.ignoresMinimumSize()) {
+      minWidth.set(1);
+      minHeight.set(1);
+    }
+
+    fixMaximumConstraints();
+  }
+
   void reset() {
     minWidth.set(1);  // TODO this may need to be 0
     minHeight.set(1);
@@ -0,0 +1,804 @@
+package hs.smartlayout;
+
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+import hs.smartlayout.multicolumn.MinimumSolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The layout calculations of {@link SmartLayout}, working on plain data instead of AWT components
+ * so layouts can be calculated without a display.  The grid is described by cells, each with a
+ * position, a span, minimum and maximum sizes, weights and an anchor.  From these the engine
+ * calculates the limits of the columns and rows, the minimum and maximum size of the layout, and
+ * the bounds of each cell for a given size of the layout.<p>
+ *
+ * The limits are only calculated again when cells are added or removed or when the sizes or
+ * weights of a cell change, and the sizes of the columns and rows are cached for recently used
+ * layout sizes.<p>
+ *
+ * This class is not thread safe, but separate instances can be used by different threads, and
+ * {@link #copy()} takes a snapshot of an engine to be used by another thread.
+ */
+public class LayoutEngine {
+
+  /**
+   * The default number of spans per axis kept by the span cache.
+   */
+  public static final int DEFAULT_SPAN_CACHE_CAPACITY = 8;
+
+  private int columns;
+  private int rows;
+  private int horizontalSpacing;
+  private int verticalSpacing;
+  private int insetTop;
+  private int insetLeft;
+  private int insetBottom;
+  private int insetRight;
+
+  /*
+   * The cells, with their minimums raised to at least 1 and their maximums raised to at least
+   * their minimums.
+   */
+
+  private int cellCount;
+  private int[] cellX = new int[16];
+  private int[] cellY = new int[16];
+  private int[] spanX = new int[16];
+  private int[] spanY = new int[16];
+  private int[] minWidths = new int[16];
+  private int[] minHeights = new int[16];
+  private int[] maxWidths = new int[16];
+  private int[] maxHeights = new int[16];
+  private double[] weightsX = new double[16];
+  private double[] weightsY = new double[16];
+  private Anchor[] anchors = new Anchor[16];
+
+  private final SpanIndex cellsBySpanX;
+  private final SpanIndex cellsBySpanY;
+
+  private boolean limitsValid;
+  private int limitCalculationCount;
+  private LineLimit[] columnLimit = new LineLimit[0];
+  private LineLimit[] rowLimit = new LineLimit[0];
+
+  /*
+   * The spans calculated for recent layout sizes.  They remain valid as long as the limits of
+   * the columns and rows do not change, which is checked whenever the limits are calculated again.
+   */
+
+  private SpanCache columnSpanCache;
+  private SpanCache rowSpanCache;
+
+  private final LinePositions columnPositions = new LinePositions();
+  private final LinePositions rowPositions = new LinePositions();
+
+  /*
+   * Scratch space for layout, so laying out the same cells again does not allocate memory.
+   */
+
+  private int[] minimums = new int[0];
+  private int[] maximums = new int[0];
+  private double[] weights = new double[0];
+  private int[] order = new int[0];
+  private int[] orderBuffer = new int[0];
+
+  /*
+   * Scratch space for solving the minimums of cells spanning multiple lines, so calculating the
+   * limits again for the same cells does not allocate memory apart from the line limits.  The
+   * solver needs arrays and a group with exactly as many columns as there are lines in a cluster,
+   * so these are kept for each cluster size that was encountered.
+   */
+
+  private int[] linkCounts = new int[0];
+  private int[] clusterStarts = new int[0];
+  private int[] clusterEnds = new int[0];
+  private int[] clusterCellEnds = new int[0];
+  private int[] clusterCells = new int[0];
+  private Limit[] lineLimits = new Limit[0];
+  private Limit[] cellLimits = new Limit[0];
+  private final List<Limit> clusterLimits = new ArrayList<Limit>();
+  private Group[] clusterGroups = new Group[0];
+  private int[][] clusterSizes = new int[0][];
+  private double[][] clusterWeights = new double[0][];
+
+  public LayoutEngine() {
+    this.cellsBySpanX = new SpanIndex();
+    this.cellsBySpanY = new SpanIndex();
+    this.columnSpanCache = new SpanCache(DEFAULT_SPAN_CACHE_CAPACITY);
+    this.rowSpanCache = new SpanCache(DEFAULT_SPAN_CACHE_CAPACITY);
+  }
+
+  /*
+   * Creates a copy of the given engine.  The limits are shared, as they are replaced instead of
+   * modified when they are calculated again.
+   */
+  private LayoutEngine(LayoutEngine other) {
+    this.columns = other.columns;
+    this.rows = other.rows;
+    this.horizontalSpacing = other.horizontalSpacing;
+    this.verticalSpacing = other.verticalSpacing;
+    this.insetTop = other.insetTop;
+    this.insetLeft = other.insetLeft;
+    this.insetBottom = other.insetBottom;
+    this.insetRight = other.insetRight;
+
+    this.cellCount = other.cellCount;
+    this.cellX = other.cellX.clone();
+    this.cellY = other.cellY.clone();
+    this.spanX = other.spanX.clone();
+    this.spanY = other.spanY.clone();
+    this.minWidths = other.minWidths.clone();
+    this.minHeights = other.minHeights.clone();
+    this.maxWidths = other.maxWidths.clone();
+    this.maxHeights = other.maxHeights.clone();
+    this.weightsX = other.weightsX.clone();
+    this.weightsY = other.weightsY.clone();
+    this.anchors = other.anchors.clone();
+    this.cellsBySpanX = new SpanIndex(other.cellsBySpanX);
+    this.cellsBySpanY = new SpanIndex(other.cellsBySpanY);
+
+    this.limitsValid = other.limitsValid;
+    this.columnLimit = other.columnLimit;
+    this.rowLimit = other.rowLimit;
+
+    this.columnSpanCache = new SpanCache(other.columnSpanCache.getCapacity());
+    this.rowSpanCache = new SpanCache(other.rowSpanCache.getCapacity());
+  }
+
+  /**
+   * Returns a copy of this engine which shares no modifiable state with it, so the copy can be
+   * used by another thread while this engine is being changed.  The span cache of the copy has
+   * the same capacity, but starts out empty; the spans it calculates can be added to this engine
+   * afterwards with {@link #addCachedSpans(LayoutEngine)}.
+   *
+   * @return a copy of this engine
+   */
+  public LayoutEngine copy() {
+    return new LayoutEngine(this);
+  }
+
+  /**
+   * Sets the number of columns and rows of the grid.
+   *
+   * @param columns the number of columns
+   * @param rows the number of rows
+   */
+  public void setGridSize(int columns, int rows) {
+    if(columns != this.columns || rows != this.rows) {
+      this.columns = columns;
+      this.rows = rows;
+      limitsValid = false;
+    }
+  }
+
+  public int getColumnCount() {
+    return columns;
+  }
+
+  public int getRowCount() {
+    return rows;
+  }
+
+  public void setSpacing(int horizontalSpacing, int verticalSpacing) {
+    this.horizontalSpacing = horizontalSpacing;
+    this.verticalSpacing = verticalSpacing;
+  }
+
+  public void setInsets(int top, int left, int bottom, int right) {
+    this.insetTop = top;
+    this.insetLeft = left;
+    this.insetBottom = bottom;
+    this.insetRight = right;
+  }
+
+  /**
+   * Sets the number of spans per axis kept by the span cache, which avoids calculating the sizes
+   * of the columns and rows again for layout sizes that were laid out recently.  Setting it to
+   * zero disables the cache.  The cached spans and the hit and miss counts are discarded.
+   *
+   * @param capacity the number of spans to keep per axis, cannot be negative
+   */
+  public void setSpanCacheCapacity(int capacity) {
+    columnSpanCache = new SpanCache(capacity);
+    rowSpanCache = new SpanCache(capacity);
+  }
+
+  /**
+   * Returns the number of times the sizes of the columns or rows were found in the span cache.
+   *
+   * @return the number of times the sizes of the columns or rows were found in the span cache
+   */
+  public long getSpanCacheHitCount() {
+    return columnSpanCache.getHitCount() + rowSpanCache.getHitCount();
+  }
+
+  /**
+   * Returns the number of times the sizes of the columns or rows had to be calculated.
+   *
+   * @return the number of times the sizes of the columns or rows had to be calculated
+   */
+  public long getSpanCacheMissCount() {
+    return columnSpanCache.getMissCount() + rowSpanCache.getMissCount();
+  }
+
+  /**
+   * Returns whether the sizes of the columns and rows for a layout of the given size are in the
+   * span cache, so {@link #layout(int, int, int[])} only needs to position the cells.
+   *
+   * @param width the width of the layout, including the insets
+   * @param height the height of the layout, including the insets
+   * @return true if the sizes of the columns and rows for a layout of the given size are in the span cache
+   */
+  public boolean isSpanCached(int width, int height) {
+    return limitsValid && columnSpanCache.contains(getContentWidth(width)) && rowSpanCache.contains(getContentHeight(height));
+  }
+
+  /**
+   * Adds the spans in the span cache of a copy of this engine to the span cache of this engine.
+   * Nothing is added when the limits of the columns and rows changed since the copy was made, or
+   * were calculated by the copy itself.  The copy must no longer be used by another thread.
+   *
+   * @param copy a copy of this engine
+   */
+  public void addCachedSpans(LayoutEngine copy) {
+    if(limitsValid && copy.columnLimit == columnLimit && copy.rowLimit == rowLimit) {
+      columnSpanCache.addAll(copy.columnSpanCache, columns);
+      rowSpanCache.addAll(copy.rowSpanCache, rows);
+    }
+  }
+
+  /**
+   * Returns the number of times the limits of the columns and rows were calculated, as opposed to
+   * being kept because nothing changed.
+   *
+   * @return the number of times the limits of the columns and rows were calculated
+   */
+  public int getLimitCalculationCount() {
+    return limitCalculationCount;
+  }
+
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  /**
+   * Adds a cell at the given position.  The cell has no size and a weight of zero until its sizes
+   * are set with {@link #setCellSizes(int, int, int, int, int, double, double)}, and is anchored
+   * to the north west until its anchor is set with {@link #setCellAnchor(int, Anchor)}.
+   *
+   * @param x the column of the cell
+   * @param y the row of the cell
+   * @param spanX the number of columns the cell spans
+   * @param spanY the number of rows the cell spans
+   * @return the index of the new cell
+   */
+  public int addCell(int x, int y, int spanX, int spanY) {
+    ensureCapacity(cellCount + 1);
+
+    int cell = cellCount++;
+
+    cellX[cell] = x;
+    cellY[cell] = y;
+    this.spanX[cell] = spanX;
+    this.spanY[cell] = spanY;
+    minWidths[cell] = 1;
+    minHeights[cell] = 1;
+    maxWidths[cell] = 1;
+    maxHeights[cell] = 1;
+    weightsX[cell] = 0;
+    weightsY[cell] = 0;
+    anchors[cell] = Anchor.NORTH_WEST;
+
+    cellsBySpanX.add(cell, spanX);
+    cellsBySpanY.add(cell, spanY);
+    limitsValid = false;
+
+    return cell;
+  }
+
+  /**
+   * Reserves space for the given number of cells, so adding that many cells does not need to grow
+   * the arrays holding them.
+   *
+   * @param capacity the number of cells to reserve space for
+   */
+  public void ensureCapacity(int capacity) {
+    if(capacity > cellX.length) {
+      int newLength = Math.max(capacity, cellX.length * 2);
+
+      cellX = Arrays.copyOf(cellX, newLength);
+      cellY = Arrays.copyOf(cellY, newLength);
+      spanX = Arrays.copyOf(spanX, newLength);
+      spanY = Arrays.copyOf(spanY, newLength);
+      minWidths = Arrays.copyOf(minWidths, newLength);
+      minHeights = Arrays.copyOf(minHeights, newLength);
+      maxWidths = Arrays.copyOf(maxWidths, newLength);
+      maxHeights = Arrays.copyOf(maxHeights, newLength);
+      weightsX = Arrays.copyOf(weightsX, newLength);
+      weightsY = Arrays.copyOf(weightsY, newLength);
+      anchors = Arrays.copyOf(anchors, newLength);
+    }
+
+    cellsBySpanX.ensureCapacity(capacity);
+    cellsBySpanY.ensureCapacity(capacity);
+  }
+
+  /**
+   * Removes the cell with the given index and all cells added after it.
+   *
+   * @param first the index of the first cell to remove
+   */
+  public void removeCells(int first) {
+    for(int cell = cellCount - 1; cell >= first; cell--) {
+      cellsBySpanX.remove(cell, spanX[cell]);
+      cellsBySpanY.remove(cell, spanY[cell]);
+      anchors[cell] = null;
+    }
+
+    if(first < cellCount) {
+      cellCount = first;
+      limitsValid = false;
+    }
+  }
+
+  /**
+   * Sets the sizes and weights of a cell.  Minimums smaller than 1 are raised to 1, and maximums
+   * smaller than the minimum are raised to the minimum.
+   *
+   * @param cell the index of a cell
+   * @param minWidth the minimum width
+   * @param minHeight the minimum height
+   * @param maxWidth the maximum width
+   * @param maxHeight the maximum height
+   * @param weightX the horizontal weight
+   * @param weightY the vertical weight
+   */
+  public void setCellSizes(int cell, int minWidth, int minHeight, int maxWidth, int maxHeight, double weightX, double weightY) {
+    minWidth = Math.max(1, minWidth);
+    minHeight = Math.max(1, minHeight);
+    maxWidth = Math.max(minWidth, maxWidth);
+    maxHeight = Math.max(minHeight, maxHeight);
+
+    if(minWidth != minWidths[cell] || minHeight != minHeights[cell] || maxWidth != maxWidths[cell] || maxHeight != maxHeights[cell]
+        || Double.doubleToLongBits(weightX) != Double.doubleToLongBits(weightsX[cell])
+        || Double.doubleToLongBits(weightY) != Double.doubleToLongBits(weightsY[cell])) {
+      minWidths[cell] = minWidth;
+      minHeights[cell] = minHeight;
+      maxWidths[cell] = maxWidth;
+      maxHeights[cell] = maxHeight;
+      weightsX[cell] = weightX;
+      weightsY[cell] = weightY;
+      limitsValid = false;
+    }
+  }
+
+  public void setCellAnchor(int cell, Anchor anchor) {
+    anchors[cell] = anchor;
+  }
+
+  /**
+   * Returns the minimum width of the layout, including the spacing and insets.
+   *
+   * @return the minimum width of the layout
+   */
+  public int getMinimumWidth() {
+    if(cellCount == 0) {
+      return 0;
+    }
+
+    ensureLimitsAreValid();
+
+    long minWidth = 0;
+
+    for(int c = 0; c < columns; c++) {
+      minWidth += columnLimit[c].minimum;
+    }
+
+    minWidth += insetLeft + insetRight + (columns - 1) * horizontalSpacing;
+
+    return (int)Math.min(minWidth, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the minimum height of the layout, including the spacing and insets.
+   *
+   * @return the minimum height of the layout
+   */
+  public int getMinimumHeight() {
+    if(cellCount == 0) {
+      return 0;
+    }
+
+    ensureLimitsAreValid();
+
+    long minHeight = 0;
+
+    for(int r = 0; r < rows; r++) {
+      minHeight += rowLimit[r].minimum;
+    }
+
+    minHeight += insetTop + insetBottom + (rows - 1) * verticalSpacing;
+
+    return (int)Math.min(minHeight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the maximum width of the layout, including the spacing and insets.
+   *
+   * @return the maximum width of the layout
+   */
+  public int getMaximumWidth() {
+    if(cellCount == 0) {
+      return Integer.MAX_VALUE;
+    }
+
+    ensureLimitsAreValid();
+
+    long maxWidth = 0;
+
+    for(int c = 0; c < columns; c++) {
+      maxWidth += columnLimit[c].maximum;
+    }
+
+    maxWidth += insetLeft + insetRight + (columns - 1) * horizontalSpacing;
+
+    return (int)Math.min(maxWidth, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the maximum height of the layout, including the spacing and insets.
+   *
+   * @return the maximum height of the layout
+   */
+  public int getMaximumHeight() {
+    if(cellCount == 0) {
+      return Integer.MAX_VALUE;
+    }
+
+    ensureLimitsAreValid();
+
+    long maxHeight = 0;
+
+    for(int r = 0; r < rows; r++) {
+      maxHeight += rowLimit[r].maximum;
+    }
+
+    maxHeight += insetTop + insetBottom + (rows - 1) * verticalSpacing;
+
+    return (int)Math.min(maxHeight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Calculates the bounds of all cells for a layout of the given size.  The bounds of each cell
+   * are stored as four consecutive values: x, y, width and height.
+   *
+   * @param width the width of the layout, including the insets
+   * @param height the height of the layout, including the insets
+   * @param bounds the array to store the bounds in, at least four times the number of cells long
+   */
+  public void layout(int width, int height, int[] bounds) {
+    if(cellCount == 0) {
+      return;
+    }
+
+    ensureLimitsAreValid();
+
+    /* Calculate the sizes of the rows and columns */
+
+    int contentWidth = getContentWidth(width);
+    int contentHeight = getContentHeight(height);
+
+    int[] spansX = getSpans(columnSpanCache, contentWidth, columns, columnLimit);
+    int[] spansY = getSpans(rowSpanCache, contentHeight, rows, rowLimit);
+
+    columnPositions.reset(spansX, columns, horizontalSpacing);
+    rowPositions.reset(spansY, rows, verticalSpacing);
+
+    /* Perform the layout */
+
+    for(int i = 0; i < cellCount; i++) {
+      int x = cellX[i];
+      int y = cellY[i];
+
+      int offsetX = columnPositions.getOffset(x);
+      int offsetY = rowPositions.getOffset(y);
+
+      int w = columnPositions.getSize(x, spanX[i]);
+      int h = rowPositions.getSize(y, spanY[i]);
+
+      int boxW = w;
+      int boxH = h;
+
+      if(w > maxWidths[i]) {
+        w = maxWidths[i];
+      }
+
+      if(h > maxHeights[i]) {
+        h = maxHeights[i];
+      }
+
+      /*
+       * When a group only contains a single row and/or column, boxW and boxH need to be adjusted to use the size
+       * of the group for the respective dimension.
+       */
+
+      if(columns == 1 && boxW < width) {
+        boxW = contentWidth;
+      }
+      if(rows == 1 && boxH < height) {
+        boxH = contentHeight;
+      }
+
+      bounds[i * 4] = insetLeft + offsetX + anchors[i].getOffsetX(w, boxW);
+      bounds[i * 4 + 1] = insetTop + offsetY + anchors[i].getOffsetY(h, boxH);
+      bounds[i * 4 + 2] = w;
+      bounds[i * 4 + 3] = h;
+    }
+  }
+
+  /**
+   * Copies the limits of the columns and rows into the given arrays.
+   */
+  void getLimits(LineLimit[] columnLimit, LineLimit[] rowLimit) {
+    ensureLimitsAreValid();
+
+    System.arraycopy(this.columnLimit, 0, columnLimit, 0, columns);
+    System.arraycopy(this.rowLimit, 0, rowLimit, 0, rows);
+  }
+
+  private int getContentWidth(int width) {
+    return width - (insetLeft + insetRight) - ((columns - 1) * horizontalSpacing);
+  }
+
+  private int getContentHeight(int height) {
+    return height - (insetTop + insetBottom) - ((rows - 1) * verticalSpacing);
+  }
+
+  private int[] getSpans(SpanCache cache, int space, int lines, LineLimit[] lineLimits) {
+    int[] spans = cache.get(space);
+
+    if(spans == null) {
+      spans = cache.add(space, lines);
+      calculateSpans(space, lines, lineLimits, spans);
+    }
+
+    return spans;
+  }
+
+  private void calculateSpans(int space, int lines, LineLimit[] lineLimits, int[] spans) {
+    if(minimums.length < lines) {
+      minimums = new int[lines];
+      maximums = new int[lines];
+      weights = new double[lines];
+      order = new int[lines];
+      orderBuffer = new int[lines];
+    }
+
+    for(int i = 0; i < lines; i++) {
+      minimums[i] = lineLimits[i].minimum;
+      maximums[i] = lineLimits[i].maximum;
+      weights[i] = lineLimits[i].weight;
+    }
+
+    LayoutRequirements.calculateTiledPositions(space, lines, minimums, maximums, weights, order, orderBuffer, spans);
+  }
+
+  private void ensureLimitsAreValid() {
+    if(limitsValid) {
+      return;
+    }
+
+    LineLimit[] previousColumnLimit = columnLimit;
+    LineLimit[] previousRowLimit = rowLimit;
+
+    columnLimit = new LineLimit[columns];
+    rowLimit = new LineLimit[rows];
+
+    for(int i = 0; i < columns; i++) {
+      columnLimit[i] = new LineLimit();
+    }
+
+    for(int i = 0; i < rows; i++) {
+      rowLimit[i] = new LineLimit();
+    }
+
+    calculateLimits(cellsBySpanX, columnLimit, cellX, minWidths, maxWidths, weightsX);
+    calculateLimits(cellsBySpanY, rowLimit, cellY, minHeights, maxHeights, weightsY);
+
+    if(!Arrays.equals(columnLimit, previousColumnLimit)) {
+      columnSpanCache.clear();
+    }
+    if(!Arrays.equals(rowLimit, previousRowLimit)) {
+      rowSpanCache.clear();
+    }
+
+    limitsValid = true;
+    limitCalculationCount++;
+  }
+
+  /*
+   * Calculates the limits of the lines along one axis from the cells, ordered by their span along
+   * that axis, and their positions, sizes and weights along that axis.
+   */
+  private void calculateLimits(SpanIndex sortedCells, LineLimit[] lineLimit, int[] positions, int[] mins, int[] maxs, double[] weights) {
+    int spanningStart = sortedCells.size();
+
+    for(int i = 0; i < sortedCells.size(); i++) {
+      int cell = sortedCells.get(i);
+      int span = sortedCells.getSpan(i);
+
+      // JOHNTODO Minimums are handled for spans > 1, what about maximum?
+      // JOHNTODO Are we happy with how weights are handled?  Span3 = 3.0, and 1.0 + 1.0 + 1.5 = 3.5...
+      // JOHNTODO Is preferred used?
+
+      if(span > 1) {
+        spanningStart = i;
+        break;
+      }
+
+      if(span == 1) {
+        LineLimit limit = lineLimit[positions[cell]];
+
+        limit.increaseMinimum(mins[cell]);
+        limit.increasePreferred(mins[cell]);
+        limit.increaseMaximum(maxs[cell]);
+        limit.increaseWeight(weights[cell]);
+      }
+    }
+
+    if(spanningStart < sortedCells.size()) {
+      fixSpanningMinimums(sortedCells, spanningStart, lineLimit, positions, mins);
+    }
+  }
+
+  /*
+   * Increases the minimums of the lines so the minimums of all cells spanning multiple lines are
+   * met, solving them together with the MinimumSolver instead of one cell at a time, so the
+   * result does not depend on the order of the cells.  Lines are only solved together when they
+   * are linked by cells spanning them, so the work stays proportional to the lines spanned by
+   * each group of overlapping cells.
+   */
+  private void fixSpanningMinimums(SpanIndex sortedCells, int spanningStart, LineLimit[] lineLimit, int[] positions, int[] mins) {
+    int lines = lineLimit.length;
+    int spanningCount = sortedCells.size() - spanningStart;
+
+    ensureSpanningCapacity(lines, spanningCount);
+
+    /*
+     * Line j is linked to line j + 1 when a cell spans both.  Each run of linked lines is solved
+     * separately, with the cells starting in it.
+     */
+
+    Arrays.fill(linkCounts, 0, lines, 0);
+    Arrays.fill(clusterCellEnds, 0, lines, 0);
+
+    for(int i = spanningStart; i < sortedCells.size(); i++) {
+      int position = positions[sortedCells.get(i)];
+
+      linkCounts[position]++;
+      linkCounts[position + sortedCells.getSpan(i) - 1]--;
+    }
+
+    for(int j = 0, links = 0, clusterStart = 0; j < lines; j++) {
+      links += linkCounts[j];
+      clusterStarts[j] = clusterStart;
+
+      if(links == 0) {
+        clusterEnds[clusterStart] = j;
+        clusterStart = j + 1;
+      }
+    }
+
+    /*
+     * The cells are sorted by the cluster they start in, keeping their order within a cluster.
+     * After counting the cells of each cluster, clusterCellEnds[j] holds the number of cells in
+     * clusters before line j, which is turned into the end of the cells of line j while the cells
+     * are placed.  The cells of a cluster therefore start at the end of the previous line.
+     */
+
+    for(int i = spanningStart; i < sortedCells.size(); i++) {
+      clusterCellEnds[clusterStarts[positions[sortedCells.get(i)]]]++;
+    }
+
+    for(int j = 0, total = 0; j < lines; j++) {
+      int count = clusterCellEnds[j];
+
+      clusterCellEnds[j] = total;
+      total += count;
+    }
+
+    for(int i = spanningStart; i < sortedCells.size(); i++) {
+      clusterCells[clusterCellEnds[clusterStarts[positions[sortedCells.get(i)]]]++] = i;
+    }
+
+    for(int clusterStart = 0; clusterStart < lines; clusterStart = clusterEnds[clusterStart] + 1) {
+      int cellsStart = clusterStart == 0 ? 0 : clusterCellEnds[clusterStart - 1];
+      int cellsEnd = clusterCellEnds[clusterStart];
+
+      if(cellsStart < cellsEnd) {
+        int lineCount = clusterEnds[clusterStart] - clusterStart + 1;
+
+        clusterLimits.clear();
+
+        for(int j = 0; j < lineCount; j++) {
+          LineLimit limit = lineLimit[clusterStart + j];
+
+          clusterLimits.add(lineLimits[j].min(limit.minimum).max(limit.maximum).weight(limit.weight));
+        }
+
+        for(int k = cellsStart; k < cellsEnd; k++) {
+          int i = clusterCells[k];
+          int cell = sortedCells.get(i);
+          int position = positions[cell] - clusterStart;
+
+          clusterLimits.add(getCellLimit(k, position, position + sortedCells.getSpan(i) - 1).min(mins[cell]));
+        }
+
+        int[] sizes = clusterSizes[lineCount];
+        double[] weights = clusterWeights[lineCount];
+
+        if(sizes == null) {
+          sizes = clusterSizes[lineCount] = new int[lineCount];
+          weights = clusterWeights[lineCount] = new double[lineCount];
+          clusterGroups[lineCount] = Group.create(lineCount);
+        }
+        else {
+          Arrays.fill(sizes, 0);
+          Arrays.fill(weights, 0.0);
+        }
+
+        MinimumSolver.fixMinimums(sizes, weights, clusterGroups[lineCount], clusterLimits);
+
+        for(int j = 0; j < lineCount; j++) {
+          lineLimit[clusterStart + j].increaseMinimum(sizes[j]);
+        }
+      }
+    }
+  }
+
+  /*
+   * Grows the scratch space for solving the minimums of cells spanning multiple lines to hold the
+   * given number of lines and spanning cells.
+   */
+  private void ensureSpanningCapacity(int lines, int spanningCount) {
+    if(linkCounts.length < lines) {
+      linkCounts = new int[lines];
+      clusterStarts = new int[lines];
+      clusterEnds = new int[lines];
+      clusterCellEnds = new int[lines];
+      lineLimits = Arrays.copyOf(lineLimits, lines);
+      clusterGroups = Arrays.copyOf(clusterGroups, lines + 1);
+      clusterSizes = Arrays.copyOf(clusterSizes, lines + 1);
+      clusterWeights = Arrays.copyOf(clusterWeights, lines + 1);
+
+      for(int j = 0; j < lines; j++) {
+        if(lineLimits[j] == null) {
+          lineLimits[j] = new Limit(j);
+        }
+      }
+    }
+
+    if(clusterCells.length < spanningCount) {
+      clusterCells = new int[spanningCount];
+      cellLimits = Arrays.copyOf(cellLimits, spanningCount);
+    }
+  }
+
+  /*
+   * Returns the limit kept at the given index for a spanning cell, with its minimum, maximum and
+   * weight reset, replacing it if the lines it covers changed.
+   */
+  private Limit getCellLimit(int index, int startLine, int endLine) {
+    Limit limit = cellLimits[index];
+
+    if(limit == null || limit.startColumn != startLine || limit.endColumn != endLine) {
+      limit = new Limit(startLine, endLine);
+      cellLimits[index] = limit;
+    }
+
+    return limit.max(Integer.MAX_VALUE).weight(1.0);
+  }
+}
@@ -1,13 +1,14 @@
 package hs.smartlayout;
 
-import java.util.TreeSet;
-
 /**
  * LayoutRequirements is a Class which contains mainly
  * static methods.  The Static methods are used to process
  * LayoutRequirements objects.
  */
 public class LayoutRequirements {
+  private static final double EPSILON = Math.ulp(1.0);
+  private static final double EXACT_INTEGER_LIMIT = 1L << 52;
+
   private final int minimum;
   private final int maximum;
   private final double weight;
@@ -23,52 +24,76 @@ public class LayoutRequirements {
    * the span they would occupy.
    */
   public static int[] calculateTiledPositions(int allocatedInput, LayoutRequirements... children) {
+    int[] minimums = new int[children.length];
+    int[] maximums = new int[children.length];
+    double[] weights = new double[children.length];
+    int[] spans = new int[children.length];
+
+    for(int i = 0; i < children.length; i++) {
+      minimums[i] = children[i].minimum;
+      maximums[i] = children[i].maximum;
+      weights[i] = children[i].weight;
+    }
+
+    calculateTiledPositions(allocatedInput, children.length, minimums, maximums, weights, new int[children.length], new int[children.length], spans);
+
+    return spans;
+  }
+
+  /**
+   * Calculates the spans in the same way as {@link #calculateTiledPositions(int, LayoutRequirements...)},
+   * for requirements given as arrays and without allocating any objects.  The maximums and weights
+   * are first adjusted in place in the same way the constructor of this class adjusts them.
+   *
+   * @param allocatedInput the space to divide
+   * @param count the number of requirements
+   * @param minimums the minimum size of each requirement
+   * @param maximums the maximum size of each requirement, adjusted in place
+   * @param weights the weight of each requirement, adjusted in place
+   * @param order scratch space, at least count long
+   * @param orderBuffer scratch space, at least count long
+   * @param spans the array to store the spans in, at least count long
+   */
+  public static void calculateTiledPositions(int allocatedInput, int count, int[] minimums, int[] maximums, double[] weights, int[] order, int[] orderBuffer, int[] spans) {
     double w = 0.0;
     int allocated = allocatedInput;
     int allocatedNonFixed = allocated;
+    int orderCount = 0;  // Components which do not have a fixed size yet, in order of Sizes
 
-    TreeSet<Sizes> sizes = new TreeSet<Sizes>();  // Doesn't allow duplicates, Sizes compareTo() never returns 0
-    int[] spans = new int[children.length];
+    for(int i = 0; i < count; i++) {
+      maximums[i] = Math.max(minimums[i], maximums[i]);
+
+      if(minimums[i] == maximums[i]) {
+        weights[i] = 0;
+      }
+    }
 
     /* Calculates for what allocated size a certain component will reach its maximum size.
        In that case the component will automatically get a span equal to its maximum size. */
 
-    for(int i = 0; i < spans.length; i++) {
-      spans[i] = children[i].minimum;
-
-      if(children[i].weight != 0) {
-        double m = children[i].maximum; // Allocated space needed for component i to reach maximum size.
-        double sw = children[i].maximum / children[i].weight; // Standardized weight.
-
-//        System.out.println("children[" + i + "].weight = " + children[i].weight + " != 0");
-
-        for(int j = 0; j < spans.length; j++) {
-          if(i != j) {
-            m += Math.max(Math.min(children[j].weight * sw, children[j].maximum), children[j].minimum);
-          }
-        }
+    markReachableMaximums(allocated, count, minimums, maximums, weights, order, orderBuffer, spans);
 
-        if(m <= allocated) {
-          // System.out.println("Maximum size met: min = " + children[i].minimum);
+    for(int i = 0; i < count; i++) {
+      if(weights[i] != 0) {
+        if(spans[i] == maximums[i]) {
           // The maximum size for component i can be met.
-          spans[i] = children[i].maximum;
-          allocatedNonFixed -= children[i].maximum;
+          allocatedNonFixed -= maximums[i];
         }
         else {
-          // System.out.println("Maximum size NOT met: min = " + children[i].minimum + " m = " + m + " allocated = " + allocated);
-
-          w += children[i].weight;
+          w += weights[i];
 
           // Only adding components that donot have a fixed size yet
-          sizes.add(new Sizes(spans[i], children[i].weight, i));
+          order[orderCount++] = i;
         }
       }
       else {
-        spans[i] = children[i].minimum;
-        allocatedNonFixed -= children[i].minimum;
+        spans[i] = minimums[i];
+        allocatedNonFixed -= minimums[i];
       }
     }
 
+    sortSizes(order, orderCount, minimums, weights);
+
     /* allocated         : The amount of pixels which can be used to layout
                            components.
 
@@ -77,79 +102,273 @@ public class LayoutRequirements {
                            equal to allocated minus the sizes of all components
                            which will become their maximum size. */
 
-    for(Sizes s : sizes) {
-      int span = s.minimum;
+    for(int k = 0; k < orderCount; k++) {
+      int i = order[k];
+      int span = minimums[i];
 
-      if(s.standardisedWeight * w < allocatedNonFixed) {
-        span = (int)Math.round(allocatedNonFixed / w * s.weight);
+      if(minimums[i] / weights[i] * w < allocatedNonFixed) {
+        span = (int)Math.round(allocatedNonFixed / w * weights[i]);
       }
       // System.out.println("sw = " + s.standardisedWeight + "  w = " + w + "  span = " + span + "  allocatedNonFixed = " + allocatedNonFixed + " --> " + span);
 
       allocatedNonFixed -= span;
-      w -= s.weight;
+      w -= weights[i];
 
-      spans[s.sequence] = span;
+      spans[i] = span;
     }
-
-    return spans;
   }
 
-  @Override
-  public String toString() {
-    return "LayoutRequirements(min = " + minimum + ", max = " + maximum + ", w = " + weight + ")";
-  }
+  /*
+   * Sets the span of each component with a weight to its maximum if its maximum size can be met,
+   * and to its minimum otherwise.  The maximum can be met if the allocated space is at least the
+   * space needed for the component to reach its maximum: its maximum plus the size each other
+   * component has at the same standardised weight (its maximum divided by its weight).
+   *
+   * The space needed only grows with the standardised weight, so instead of summing it for each
+   * component separately the components are visited in order of the standardised weight at which
+   * they reach their maximum, keeping running sums of the components that are at their minimum,
+   * in between and at their maximum.  This only differs from summing the sizes by rounding
+   * errors; if the result is too close to the allocated space to be sure, the sizes are summed.
+   *
+   * Summing takes O(count) for each component that is too close to call (shared by components with
+   * the same standardised weight when all sizes are integers).  Only components which reach their
+   * maximum at nearly exactly the allocated space are affected, but in the worst case, when that
+   * holds for most components at different standardised weights, this is O(count^2): never more
+   * than summing for every component, as was done before.
+   */
+  private static void markReachableMaximums(int allocated, int count, int[] minimums, int[] maximums, double[] weights, int[] byMaximum, int[] byMinimum, int[] spans) {
+    int weightedCount = 0;
+    double minimumSize = 0;  // Total size when all components are at their minimum
+    double totalWeight = 0;
+    double magnitude = 0;  // Bounds the absolute value of all sizes that are summed
 
-  private static class Sizes implements Comparable<Sizes> {
-    public final int minimum;
-    public final double weight;
-    public final double standardisedWeight;
-    public final int sequence;
+    for(int j = 0; j < count; j++) {
+      if(!(weights[j] >= 0) || Double.isInfinite(weights[j])) {
+        markReachableMaximumsBySumming(allocated, count, minimums, maximums, weights, spans);
+        return;
+      }
 
-    public Sizes(int m, double w, int s) {
-      minimum = m;
-      weight = w;
-      sequence = s;
+      magnitude += Math.abs((double)minimums[j]) + Math.abs((double)maximums[j]);
 
-      if(w != 0) {
-        standardisedWeight = m / w;
+      if(weights[j] != 0) {
+        byMaximum[weightedCount] = j;
+        byMinimum[weightedCount] = j;
+        weightedCount++;
+        minimumSize += minimums[j];
+        totalWeight += weights[j];
       }
       else {
-        standardisedWeight = 0;
+        minimumSize += Math.max(Math.min(0.0, maximums[j]), minimums[j]);
       }
     }
 
-    /**
-     * Compares two Sizes objects.  <b>Note:</b> this function never returns 0 for equal
-     * objects to make it possible to add duplicate Sizes objects to java sets.
-     */
-    @Override
-    public int compareTo(Sizes sizes) {
-      double d = sizes.standardisedWeight - standardisedWeight;
+    sortByStandardisedWeight(byMaximum, weightedCount, maximums, weights);
+    sortByStandardisedWeight(byMinimum, weightedCount, minimums, weights);
 
-      if(d < 0) {
-        return -1;
+    double growth = 0;  // Size gained by the components above their minimum, excluding those growing with the level
+    double growingWeight = 0;  // Weight of the components between their minimum and maximum
+    int minimumsPassed = 0;
+    int maximumsPassed = 0;
+    double summedLevel = Double.NaN;
+    double summedSize = 0;
+    boolean summedSizeExact = false;
+
+    for(int k = 0; k < weightedCount; k++) {
+      int i = byMaximum[k];
+      double sw = maximums[i] / weights[i]; // Standardized weight.
+
+      while(minimumsPassed < weightedCount && minimums[byMinimum[minimumsPassed]] / weights[byMinimum[minimumsPassed]] <= sw) {
+        int j = byMinimum[minimumsPassed++];
+
+        growth -= minimums[j];
+        growingWeight += weights[j];
       }
-      else if(d > 0) {
-        return 1;
+
+      while(maximumsPassed < weightedCount && maximums[byMaximum[maximumsPassed]] / weights[byMaximum[maximumsPassed]] <= sw) {
+        int j = byMaximum[maximumsPassed++];
+
+        growth += maximums[j];
+        growingWeight -= weights[j];
       }
-      else {
-        d = sizes.weight - weight;
 
-        if(d < 0) {
-          return -1;
+      double m = minimumSize + growth + sw * growingWeight; // Allocated space needed for component i to reach maximum size.
+      double tolerance = (4.0 * count + 16) * EPSILON * (magnitude + sw * totalWeight);
+
+      if(!(Math.abs(m - allocated) > tolerance)) {
+
+        /*
+         * Too close to call, sum the sizes.  If all sizes at this standardised weight are
+         * integers the sum is exact, and can be shared by components with the same standardised
+         * weight.
+         */
+
+        if(sw != summedLevel) {
+          summedLevel = sw;
+          summedSize = 0;
+          summedSizeExact = magnitude < EXACT_INTEGER_LIMIT;
+
+          for(int j = 0; j < count; j++) {
+            double size = Math.max(Math.min(weights[j] * sw, maximums[j]), minimums[j]);
+
+            summedSize += size;
+            summedSizeExact &= size == Math.rint(size);
+          }
         }
-        else if(d > 0) {
-          return 1;
+
+        if(summedSizeExact) {
+          m = maximums[i] + (summedSize - Math.max(Math.min(weights[i] * sw, maximums[i]), minimums[i]));
         }
         else {
-          return sequence - sizes.sequence;
+          m = calculateSpaceNeeded(i, count, minimums, maximums, weights);
         }
       }
+
+      spans[i] = m <= allocated ? maximums[i] : minimums[i];
     }
+  }
 
-    @Override
-    public String toString() {
-      return "Sizes(" + minimum + ", " + weight + ", " + standardisedWeight + ")";
+  private static void markReachableMaximumsBySumming(int allocated, int count, int[] minimums, int[] maximums, double[] weights, int[] spans) {
+    for(int i = 0; i < count; i++) {
+      if(weights[i] != 0) {
+        spans[i] = calculateSpaceNeeded(i, count, minimums, maximums, weights) <= allocated ? maximums[i] : minimums[i];
+      }
     }
   }
+
+  /*
+   * Calculates the allocated space needed for the given component to reach its maximum size.
+   */
+  private static double calculateSpaceNeeded(int i, int count, int[] minimums, int[] maximums, double[] weights) {
+    double m = maximums[i];
+    double sw = maximums[i] / weights[i]; // Standardized weight.
+
+    for(int j = 0; j < count; j++) {
+      if(i != j) {
+        m += Math.max(Math.min(weights[j] * sw, maximums[j]), minimums[j]);
+      }
+    }
+
+    return m;
+  }
+
+  /*
+   * Sorts the given components in place (heap sort) by ascending size divided by weight.
+   */
+  private static void sortByStandardisedWeight(int[] order, int count, int[] sizes, double[] weights) {
+    for(int i = count / 2 - 1; i >= 0; i--) {
+      siftDownByStandardisedWeight(order, i, count, sizes, weights);
+    }
+
+    for(int end = count - 1; end > 0; end--) {
+      int swap = order[0];
+
+      order[0] = order[end];
+      order[end] = swap;
+
+      siftDownByStandardisedWeight(order, 0, end, sizes, weights);
+    }
+  }
+
+  private static void siftDownByStandardisedWeight(int[] order, int position, int count, int[] sizes, double[] weights) {
+    int value = order[position];
+    double valueKey = sizes[value] / weights[value];
+
+    for(;;) {
+      int child = position * 2 + 1;
+
+      if(child >= count) {
+        break;
+      }
+
+      if(child + 1 < count && sizes[order[child + 1]] / weights[order[child + 1]] > sizes[order[child]] / weights[order[child]]) {
+        child++;
+      }
+
+      if(sizes[order[child]] / weights[order[child]] <= valueKey) {
+        break;
+      }
+
+      order[position] = order[child];
+      position = child;
+    }
+
+    order[position] = value;
+  }
+
+  /*
+   * Sorts the given components in place (heap sort) by descending standardised weight, then by
+   * descending weight and then by their position.
+   */
+  private static void sortSizes(int[] order, int count, int[] minimums, double[] weights) {
+    for(int i = count / 2 - 1; i >= 0; i--) {
+      siftDown(order, i, count, minimums, weights);
+    }
+
+    for(int end = count - 1; end > 0; end--) {
+      int swap = order[0];
+
+      order[0] = order[end];
+      order[end] = swap;
+
+      siftDown(order, 0, end, minimums, weights);
+    }
+  }
+
+  private static void siftDown(int[] order, int position, int count, int[] minimums, double[] weights) {
+    int value = order[position];
+
+    for(;;) {
+      int child = position * 2 + 1;
+
+      if(child >= count) {
+        break;
+      }
+
+      if(child + 1 < count && compareSizes(order[child + 1], order[child], minimums, weights) > 0) {
+        child++;
+      }
+
+      if(compareSizes(order[child], value, minimums, weights) <= 0) {
+        break;
+      }
+
+      order[position] = order[child];
+      position = child;
+    }
+
+    order[position] = value;
+  }
+
+  /*
+   * Compares two components like Sizes.compareTo did: the component with the highest standardised
+   * weight comes first, then the one with the highest weight, then the one that comes first.
+   */
+  private static int compareSizes(int a, int b, int[] minimums, double[] weights) {
+    double d = minimums[b] / weights[b] - minimums[a] / weights[a];
+
+    if(d < 0) {
+      return -1;
+    }
+    else if(d > 0) {
+      return 1;
+    }
+    else {
+      d = weights[b] - weights[a];
+
+      if(d < 0) {
+        return -1;
+      }
+      else if(d > 0) {
+        return 1;
+      }
+      else {
+        return a - b;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LayoutRequirements(min = " + minimum + ", max = " + maximum + ", w = " + weight + ")";
+  }
 }
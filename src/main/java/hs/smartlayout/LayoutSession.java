@@ -0,0 +1,129 @@
+package hs.smartlayout;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the preferred and maximum sizes of components, shared by every {@link SmartLayout}
+ * measuring components on the thread which opened the session.<p>
+ *
+ * Validating nested containers can measure the same component several times, for example when
+ * a nested container is resized by its parent after its limits were calculated, which makes it
+ * measure all its children again.  While a session is open, each component is only asked for its
+ * preferred and maximum size once, so each subtree is only measured once.<p>
+ *
+ * {@link SmartLayout} opens a session (or joins the one already open) while it measures its
+ * components, so a container and all containers nested in it share one session while the outermost
+ * one calculates its layout.  To share a session across a whole validation, including the layouts
+ * of nested containers done after their parent was laid out, use {@link #validate(Container)}.<p>
+ *
+ * The sizes of components are assumed not to change while a session is open.  A session should
+ * therefore only be kept open during a single validation.
+ */
+public final class LayoutSession {
+  private static final ThreadLocal<LayoutSession> CURRENT = new ThreadLocal<LayoutSession>();
+
+  private final Map<Component, Dimension> preferredSizes = new IdentityHashMap<Component, Dimension>();
+  private final Map<Component, Dimension> maximumSizes = new IdentityHashMap<Component, Dimension>();
+  private int openCount;
+
+  private LayoutSession() {
+  }
+
+  /**
+   * Opens a session on the current thread, or joins the session which is already open on the
+   * current thread.  Each call must be matched by a call to {@link #close()} on the same thread.
+   *
+   * @return the session open on the current thread
+   */
+  public static LayoutSession open() {
+    LayoutSession session = CURRENT.get();
+
+    if(session == null) {
+      session = new LayoutSession();
+      CURRENT.set(session);
+    }
+
+    session.openCount++;
+
+    return session;
+  }
+
+  /**
+   * Closes this session, discarding the cached sizes when it was closed as often as it was
+   * opened.
+   */
+  public void close() {
+    if(openCount == 0) {
+      throw new IllegalStateException("session is not open");
+    }
+
+    if(--openCount == 0) {
+      CURRENT.remove();
+      preferredSizes.clear();
+      maximumSizes.clear();
+    }
+  }
+
+  /**
+   * Validates the given container with a session open, so each component in it is measured only
+   * once.
+   *
+   * @param container the container to validate
+   */
+  public static void validate(Container container) {
+    LayoutSession session = open();
+
+    try {
+      container.validate();
+    }
+    finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Returns the preferred size of the given component, which is only queried once while a session
+   * is open on the current thread.  The returned value must not be modified.
+   */
+  static Dimension getPreferredSize(Component component) {
+    LayoutSession session = CURRENT.get();
+
+    if(session == null) {
+      return component.getPreferredSize();
+    }
+
+    Dimension size = session.preferredSizes.get(component);
+
+    if(size == null) {
+      size = component.getPreferredSize();
+      session.preferredSizes.put(component, size);
+    }
+
+    return size;
+  }
+
+  /**
+   * Returns the maximum size of the given component, which is only queried once while a session
+   * is open on the current thread.  The returned value must not be modified.
+   */
+  static Dimension getMaximumSize(Component component) {
+    LayoutSession session = CURRENT.get();
+
+    if(session == null) {
+      return component.getMaximumSize();
+    }
+
+    Dimension size = session.maximumSizes.get(component);
+
+    if(size == null) {
+      size = component.getMaximumSize();
+      session.maximumSizes.put(component, size);
+    }
+
+    return size;
+  }
+}
@@ -0,0 +1,96 @@
+package hs.smartlayout;
+
+/**
+ * The positions of the lines (columns or rows) along one axis of a layout.  They are calculated
+ * once per layout pass from the spans of the lines, after which the offset and size of a block
+ * can be looked up in constant time instead of summing the spans it covers.<p>
+ *
+ * This class is not thread safe.
+ */
+class LinePositions {
+  private int[] offsets = new int[1];
+  private int[] nextNonEmpty = new int[1];
+  private int[] spans;
+  private int spacing;
+  private boolean summing;
+
+  /**
+   * Calculates the positions of the given lines.  Arrays used by the previous positions are
+   * reused when they are large enough.  The given spans are not copied, and must not be modified
+   * while these positions are in use.
+   *
+   * @param spans the span of each line
+   * @param count the number of lines
+   * @param spacing the space between two lines
+   */
+  public void reset(int[] spans, int count, int spacing) {
+    if(offsets.length < count + 1) {
+      offsets = new int[count + 1];
+      nextNonEmpty = new int[count + 1];
+    }
+
+    this.spans = spans;
+    this.spacing = spacing;
+    this.summing = spacing < 0;
+
+    offsets[0] = 0;
+    nextNonEmpty[count] = count;
+
+    for(int i = 0; i < count; i++) {
+      offsets[i + 1] = offsets[i] + spans[i] + spacing;
+      summing |= spans[i] < 0;
+    }
+
+    for(int i = count - 1; i >= 0; i--) {
+      nextNonEmpty[i] = spans[i] != 0 ? i : nextNonEmpty[i + 1];
+    }
+  }
+
+  /**
+   * Returns the offset of the given line, which is the total span of the lines before it plus the
+   * spacing after each of them.
+   *
+   * @param line a line
+   * @return the offset of the given line
+   */
+  public int getOffset(int line) {
+    return offsets[line];
+  }
+
+  /**
+   * Returns the size of a block covering the given lines.  This is the total span of the lines
+   * plus the spacing between them, except that no spacing is added after lines with a span of
+   * zero at the start of the block.
+   *
+   * @param line the first line covered
+   * @param count the number of lines covered
+   * @return the size of a block covering the given lines
+   */
+  public int getSize(int line, int count) {
+    if(summing) {
+      return sumSize(line, count);
+    }
+
+    int size = offsets[line + count] - offsets[line] - spacing * count;
+    int spacings = line + count - 1 - nextNonEmpty[line];
+
+    return spacings > 0 ? size + spacing * spacings : size;
+  }
+
+  /*
+   * Sums the size the slow way, for negative spans or spacing where the size can return to zero
+   * halfway through a block.
+   */
+  private int sumSize(int line, int count) {
+    int size = 0;
+
+    for(int i = 0; i < count; i++) {
+      if(size != 0) {
+        size += spacing;
+      }
+      size += spans[line + i];
+    }
+
+    return size;
+  }
+}
@@ -0,0 +1,88 @@
+package hs.smartlayout;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Keeps track of which block occupies each cell of a layout.  Cells are identified by their
+ * position in the order in which they are filled, and are stored in a dense array that grows as
+ * needed, with a bit set of the occupied cells to quickly find the next free cell.<p>
+ *
+ * This class is not thread safe.
+ */
+class OccupancyGrid {
+  private Block[] cells = new Block[16];
+  private final BitSet occupied = new BitSet();
+
+  /**
+   * Returns the block occupying the cell at the given position, or null if the cell is free.
+   *
+   * @param position a position, cannot be negative
+   * @return the block occupying the cell at the given position, or null if the cell is free
+   */
+  public Block get(int position) {
+    return position < cells.length ? cells[position] : null;
+  }
+
+  public boolean isOccupied(int position) {
+    return occupied.get(position);
+  }
+
+  /**
+   * Marks the cell at the given position as occupied by the given block.
+   *
+   * @param position a position, cannot be negative
+   * @param block a block, cannot be null
+   */
+  public void set(int position, Block block) {
+    if(position >= cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(position + 1, cells.length * 2));
+    }
+
+    cells[position] = block;
+    occupied.set(position);
+  }
+
+  /**
+   * Makes room for the given number of cells, so cells at positions below it can be occupied
+   * without growing the grid.
+   *
+   * @param capacity the number of cells
+   */
+  public void ensureCapacity(int capacity) {
+    if(capacity > cells.length) {
+      cells = Arrays.copyOf(cells, capacity);
+    }
+  }
+
+  /**
+   * Marks the cell at the given position as free.
+   *
+   * @param position a position, cannot be negative
+   */
+  public void remove(int position) {
+    if(position < cells.length) {
+      cells[position] = null;
+    }
+
+    occupied.clear(position);
+  }
+
+  /**
+   * Marks all cells as free.
+   */
+  public void clear() {
+    Arrays.fill(cells, 0, Math.min(cells.length, occupied.length()), null);
+    occupied.clear();
+  }
+
+  /**
+   * Returns the first free position at or after the given position.
+   *
+   * @param position a position, cannot be negative
+   * @return the first free position at or after the given position
+   */
+  public int nextFreePosition(int position) {
+    return occupied.nextClearBit(position);
+  }
+}
@@ -3,61 +3,89 @@ package hs.smartlayout;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Insets;
 import java.awt.LayoutManager2;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
-import javax.swing.JPanel;
-import javax.swing.JScrollPane;
+import javax.swing.JComponent;
 
 /**
  * A layout manager which works with groups of components.  The user of this layout manager
  * must divide components in logical groups (either horizontal with a specified number of rows
  * or vertical with a specified number of columns) and provide constraints for components.<p>
  *
- * A full explanation of this system is beyond the scope of this javadoc documentation.
+ * A full explanation of this system is beyond the scope of this javadoc documentation.<p>
+ *
+ * The components are placed in the grid by this class, while the sizes of the columns and rows
+ * and the bounds of the components are calculated by a {@link LayoutEngine}, which does not
+ * depend on AWT.
  */
 public class SmartLayout implements LayoutManager2 {
 
-//  private static final Comparator<Block> SPAN_X_COMPARATOR = new Comparator<Block>() {
-//    public int compare(Block o1, Block o2) {
-//      return o1.getUserConstraints().getSpanX() - o2.getUserConstraints().getSpanX();
-//    }
-//  };
-
-  private static final Comparator<Block> SPAN_Y_COMPARATOR = new Comparator<Block>() {
-    @Override
-    public int compare(Block o1, Block o2) {
-      return o1.getUserConstraints().getSpanY() - o2.getUserConstraints().getSpanY();
-    }
-  };
+  /**
+   * The default number of spans per axis kept by the span cache.
+   */
+  public static final int DEFAULT_SPAN_CACHE_CAPACITY = LayoutEngine.DEFAULT_SPAN_CACHE_CAPACITY;
 
   private final boolean vertical;
   private final int lines;
   private int horizontalSpacing;
   private int verticalSpacing;
 
-  private final List<Block> blocks = new ArrayList<Block>();
-  private final Map<Integer, Block> matrix = new HashMap<Integer, Block>();
+  private final ArrayList<Block> blocks = new ArrayList<Block>();
+  private final OccupancyGrid matrix = new OccupancyGrid();
+  private final LayoutEngine engine = new LayoutEngine();
 
   private Dimension minimum;
   private Dimension maximum;
   private boolean layoutConstraintsValid = false;
-  private LineLimit[] columnLimit;
-  private LineLimit[] rowLimit;
+
+  /*
+   * Scratch space for layoutContainer, so laying out the same components again does not allocate
+   * memory.
+   */
+
+  private final Insets insets = new Insets(0, 0, 0, 0);
+  private int[] bounds = new int[0];
+
+  /*
+   * The executor calculating the bounds of the components, or null to calculate them while laying
+   * out the container.  Every layout and invalidation increases the layout count, so bounds
+   * calculated for an earlier layout can be recognized and discarded.
+   */
+
+  private Executor executor;
+  private int layoutCount;
 
   private int insertPosition = 0;
 
+  /*
+   * Set while components which were already placed by addLayoutComponents are being added to
+   * their container, which calls addLayoutComponent for each of them.
+   */
+
+  private boolean addingPlacedComponents;
+
+  /*
+   * Set while bounds calculated by the executor are being applied.  Changing the bounds of the
+   * components invalidates the container, but as the constraints did not change this is ignored,
+   * just like it is when the components are laid out while the container is being validated.
+   */
+
+  private boolean applyingBounds;
+
   public SmartLayout(boolean vertical, int lines, int horizontalSpacing, int verticalSpacing) {
     this.vertical = vertical;
     this.lines = lines;
     this.horizontalSpacing = horizontalSpacing;
     this.verticalSpacing = verticalSpacing;
+
+    engine.setSpacing(horizontalSpacing, verticalSpacing);
   }
 
   public SmartLayout(boolean vertical, int lines) {
@@ -74,6 +102,7 @@ public class SmartLayout implements LayoutManager2 {
 
   public void setHorizontalSpacing(int spacing) {
     this.horizontalSpacing = spacing;
+    engine.setSpacing(horizontalSpacing, verticalSpacing);
     layoutConstraintsValid = false;
   }
 
@@ -83,9 +112,68 @@ public class SmartLayout implements LayoutManager2 {
 
   public void setVerticalSpacing(int spacing) {
     this.verticalSpacing = spacing;
+    engine.setSpacing(horizontalSpacing, verticalSpacing);
     layoutConstraintsValid = false;
   }
 
+  /**
+   * Sets the number of spans per axis kept by the span cache, which avoids calculating the sizes
+   * of the columns and rows again for container sizes that were laid out recently.  Setting it
+   * to zero disables the cache.  The cached spans and the hit and miss counts are discarded.
+   *
+   * @param capacity the number of spans to keep per axis, cannot be negative
+   */
+  public void setSpanCacheCapacity(int capacity) {
+    engine.setSpanCacheCapacity(capacity);
+  }
+
+  /**
+   * Returns the number of times the sizes of the columns or rows were found in the span cache.
+   *
+   * @return the number of times the sizes of the columns or rows were found in the span cache
+   */
+  public long getSpanCacheHitCount() {
+    return engine.getSpanCacheHitCount();
+  }
+
+  /**
+   * Returns the number of times the sizes of the columns or rows had to be calculated.
+   *
+   * @return the number of times the sizes of the columns or rows had to be calculated
+   */
+  public long getSpanCacheMissCount() {
+    return engine.getSpanCacheMissCount();
+  }
+
+  /**
+   * Sets the executor used to calculate the bounds of the components off the event dispatch
+   * thread, or null to calculate them while laying out the container, which is the default.<p>
+   *
+   * With an executor, {@link #layoutContainer(Container)} still measures the components, but then
+   * takes a snapshot of the layout and leaves distributing the space over the columns and rows to
+   * the executor.  The bounds are applied on the event dispatch thread with a single
+   * {@link EventQueue#invokeLater(Runnable)}, after which the components which changed size are
+   * validated, so their own components are laid out as well; the container itself is not laid out
+   * again.  Sizes which were laid out recently are found in the span cache, and are still laid out
+   * immediately.<p>
+   *
+   * Bounds are stale, and dropped without being applied, when {@link #invalidateLayout(Container)}
+   * or {@link #layoutContainer(Container)} was called while they were being calculated, even if
+   * the size of the container and the sizes of its components did not change.  The bounds are
+   * then applied by the layout which follows instead.<p>
+   *
+   * The layout must then only be used on the event dispatch thread.
+   *
+   * @param executor an executor, or null to lay out synchronously
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
   @Override
   public void addLayoutComponent(String name, Component c) {
     throw new UnsupportedOperationException("Components can only be added with constraints");
@@ -94,7 +182,105 @@ public class SmartLayout implements LayoutManager2 {
   @Override
   public void addLayoutComponent(Component component, Object o) {
 //    System.out.println("AddLayoutComponent " + component);
-    Constraints c = o == null ? new Constraints() : (Constraints)o;
+    if(addingPlacedComponents) {
+      return;
+    }
+
+    placeBlock(component, o == null ? new Constraints() : (Constraints)o);
+
+    layoutConstraintsValid = false;
+  }
+
+  /**
+   * Adds the given components with the constraints at the same position in the list of
+   * constraints to the given container in list order, like adding them one by one with
+   * {@link Container#add(Component, Object)}, but checking the placement of all components before
+   * any of them is added.  If any component cannot be placed, none of the components are added.
+   * The layout is only invalidated once, and the space needed by the components is reserved in
+   * advance.
+   *
+   * @param parent the container using this layout
+   * @param components the components to add
+   * @param constraints the constraints of each component
+   * @throws IllegalArgumentException when the lists differ in size, when a component or its constraints are null, when a component is listed twice, cannot be placed or is already part of the container, or when the container does not use this layout
+   */
+  public void addLayoutComponents(Container parent, List<? extends Component> components, List<Constraints> constraints) {
+    if(parent.getLayout() != this) {
+      throw new IllegalArgumentException("container does not use this layout: " + parent);
+    }
+    if(components.size() != constraints.size()) {
+      throw new IllegalArgumentException("number of components and constraints differ: " + components.size() + " != " + constraints.size());
+    }
+
+    Set<Component> listedComponents = new HashSet<Component>();
+    long cellCount = 0;
+
+    for(int i = 0; i < components.size(); i++) {
+      Component component = components.get(i);
+      Constraints c = constraints.get(i);
+
+      if(component == null) {
+        throw new IllegalArgumentException("component " + i + " is null");
+      }
+      if(c == null) {
+        throw new IllegalArgumentException("constraints of component " + i + " are null: " + component);
+      }
+      if(component.getParent() == parent) {
+        throw new IllegalArgumentException("component was already added: " + component);
+      }
+      if(!listedComponents.add(component)) {
+        throw new IllegalArgumentException("component was listed twice: " + component);
+      }
+
+      cellCount += (long)c.getSpanX() * c.getSpanY();
+    }
+
+    int first = blocks.size();
+
+    blocks.ensureCapacity(first + components.size());
+    engine.ensureCapacity(first + components.size());
+    matrix.ensureCapacity((int)Math.min(insertPosition + cellCount, Integer.MAX_VALUE - 8));
+
+    try {
+      for(int i = 0; i < components.size(); i++) {
+        placeBlock(components.get(i), constraints.get(i));
+      }
+    }
+    catch(RuntimeException e) {
+      removeBlocks(first);
+      throw e;
+    }
+
+    layoutConstraintsValid = false;
+    addingPlacedComponents = true;
+
+    try {
+      for(int i = 0; i < components.size(); i++) {
+        parent.add(components.get(i), constraints.get(i));
+      }
+    }
+    catch(RuntimeException e) {
+      addingPlacedComponents = false;
+      removeBlocks(first);
+
+      for(Component component : components) {
+        if(component.getParent() == parent) {
+          parent.remove(component);
+        }
+      }
+
+      throw e;
+    }
+    finally {
+      addingPlacedComponents = false;
+    }
+  }
+
+  /*
+   * Places a block for the given component at the insert position, and advances the insert
+   * position.
+   */
+  private void placeBlock(Component component, Constraints c) {
     int gridX = vertical ? insertPosition % lines : insertPosition / lines;
     int gridY = vertical ? insertPosition / lines : insertPosition % lines;
 
@@ -114,7 +300,7 @@ public class SmartLayout implements LayoutManager2 {
           throw new IllegalArgumentException("position + span size for " + component + " exceeds number of lines in group");
         }
 
-        if(matrix.containsKey(position)) {
+        if(matrix.isOccupied(position)) {
           throw new IllegalArgumentException("component overlaps existing component (" + matrix.get(position) + "): " + component);
         }
       }
@@ -127,12 +313,13 @@ public class SmartLayout implements LayoutManager2 {
     Block block = new Block(component, c, gridX, gridY);
 
     blocks.add(block);
+    engine.addCell(gridX, gridY, c.getSpanX(), c.getSpanY());
 
     for(int y = gridY; y < gridY + c.getSpanY(); y++) {
       for(int x = gridX; x < gridX + c.getSpanX(); x++) {
         int position = vertical ? y * lines + x : x * lines + y;
 
-        matrix.put(position, block);
+        matrix.set(position, block);
       }
     }
 
@@ -140,10 +327,36 @@ public class SmartLayout implements LayoutManager2 {
      * Calculate next insert position
      */
 
-    while(matrix.containsKey(++insertPosition)) {
+    insertPosition = matrix.nextFreePosition(insertPosition + 1);
+  }
+
+  /*
+   * Removes the block at the given index and all blocks after it, and moves the insert position
+   * back to where the first of these blocks was placed.  Returns the removed blocks.
+   */
+  private List<Block> removeBlocks(int first) {
+    List<Block> tail = blocks.subList(first, blocks.size());
+    List<Block> removedBlocks = new ArrayList<Block>(tail);
+
+    if(removedBlocks.isEmpty()) {
+      return removedBlocks;
     }
 
-    layoutConstraintsValid = false;
+    for(Block block : removedBlocks) {
+      for(int y = block.getY(); y < block.getY() + block.getUserConstraints().getSpanY(); y++) {
+        for(int x = block.getX(); x < block.getX() + block.getUserConstraints().getSpanX(); x++) {
+          matrix.remove(vertical ? y * lines + x : x * lines + y);
+        }
+      }
+    }
+
+    Block firstRemoved = removedBlocks.get(0);
+
+    tail.clear();
+    engine.removeCells(first);
+    insertPosition = vertical ? firstRemoved.getY() * lines + firstRemoved.getX() : firstRemoved.getX() * lines + firstRemoved.getY();
+
+    return removedBlocks;
   }
 
   @Override
@@ -158,7 +371,12 @@ public class SmartLayout implements LayoutManager2 {
 
   @Override
   public void invalidateLayout(Container c) {
+    if(applyingBounds) {
+      return;
+    }
+
     layoutConstraintsValid = false;
+    layoutCount++;
     // System.out.println("invalidatelayout" + System.currentTimeMillis());
   }
 
@@ -172,148 +390,106 @@ public class SmartLayout implements LayoutManager2 {
   public void layoutContainer(Container container) {
     ensureLayoutConstraintsAreValid(container);
 
+    layoutCount++;
+
     // System.out.println("SMARTLAYOUT: LayoutContainer(" + container + ")");
 
     if(!blocks.isEmpty()) {
+      Insets insets = getInsets(container);
 
-      /* Layout can be either horizontally based or vertically based.
-
-         Horizontal layout means that the number of rows is fixed and objects
-         are evenly distributed among the rows.  Below an example with 2 rows:
-
-         1 3 5 7 .
-         2 4 6 . .
-
-         Vertical layout means that the number of columns is fixed and objects
-         are evenly distributed among the columns.  Below an example with 2
-         columns:
-
-         1 2
-         3 4
-         5 6
-         7 .
-         . .
-
-         Depending on the horizontal or vertical layout, the number of lines
-         which the user specified respectively indicates the number of fixed
-         rows or columns. */
-
-      int columns = vertical ? lines : (insertPosition + lines - 1) / lines;
-      int rows = vertical ? (insertPosition + lines - 1) / lines : lines;
-
-      /* Get information about the dimensions of the layout area */
-
-      Insets insets = container.getInsets();
-
-      /* Prepare to calculate the sizes of the rows and columns */
+      engine.setInsets(insets.top, insets.left, insets.bottom, insets.right);
 
-      LayoutRequirements[] lrX = createLayoutRequirements(columns, columnLimit);
-      LayoutRequirements[] lrY = createLayoutRequirements(rows, rowLimit);
-
-      /* Calculate the sizes of the rows and columns */
-
-      int containerContentWidth = container.getWidth() - (insets.left + insets.right) - ((columns - 1) * horizontalSpacing);
-      int containerContentHeight = container.getHeight() - (insets.top + insets.bottom) - ((rows - 1) * verticalSpacing);
-
-//      System.out.println("container = " + container.getWidth() + "x" + container.getHeight() + " --> " + containerContentWidth + "x" + containerContentHeight);
-
-      int[] spansX = LayoutRequirements.calculateTiledPositions(containerContentWidth, lrX);
-      int[] spansY = LayoutRequirements.calculateTiledPositions(containerContentHeight, lrY);
-
-//      System.out.println(container.getName() + ": lrX = " + Arrays.toString(lrX));
-//      System.out.println(container.getName() + ": lrY = " + Arrays.toString(lrY));
-//
-//      System.out.println(container.getName() + ": xspans = " + Arrays.toString(spansX));
-//      System.out.println(container.getName() + ": yspans = " + Arrays.toString(spansY));
-
-      /* Perform the layout */
-
-      for(Block block : blocks) {
-        Constraints uc = block.getUserConstraints();
-        LayoutConstraints lc = block.getLayoutConstraints();
-        int x = block.getX();
-        int y = block.getY();
-
-        // TODO this can be more efficient
-        // For example, Spans could contain a cumulative value
-        int offsetX = sumArray(spansX, 0, x) + horizontalSpacing * x;
-        int offsetY = sumArray(spansY, 0, y) + verticalSpacing * y;
-
-        int w = calculateSize(spansX, x, uc.getSpanX(), horizontalSpacing);
-        int h = calculateSize(spansY, y, uc.getSpanY(), verticalSpacing);
-
-        int boxW = w;
-        int boxH = h;
-
-        if(w > lc.maxWidth.get()) {
-          w = lc.maxWidth.get();
-        }
-
-        if(h > lc.maxHeight.get()) {
-          h = lc.maxHeight.get();
-        }
-
-        /*
-         * When a group only contains a single row and/or column, boxW and boxH need to be adjusted to use the size
-         * of the group for the respective dimension.
-         */
-
-        if(columns == 1 && boxW < container.getWidth()) {
-          boxW = containerContentWidth;
-        }
-        if(rows == 1 && boxH < container.getHeight()) {
-          boxH = containerContentHeight;
-        }
-
-
-//        System.out.println("Box size = (" + boxW + ", " + boxH + "), w, h = (" + w + ", " + h + ")");
+      for(int i = 0; i < blocks.size(); i++) {
+        engine.setCellAnchor(i, blocks.get(i).getUserConstraints().getAnchor());
+      }
 
-        Dimension anchorOffset = uc.getAnchorOffset(w, h, boxW, boxH);
+      if(executor != null && !engine.isSpanCached(container.getWidth(), container.getHeight())) {
+        layOutLater(container);
+        return;
+      }
 
-//        System.out.println(block.getComponent().getClass() + " -- " + block.getComponent().getParent().getClass());
+      if(bounds.length < blocks.size() * 4) {
+        bounds = new int[blocks.size() * 4];
+      }
 
-//        if(block.getComponent() instanceof JScrollPane) {
-//          System.out.println(block.getComponent().getClass() + " -- " + block.getComponent().getParent().getClass());
-//          w = 500;
-//          h = 500;
-//        }
+      engine.layout(container.getWidth(), container.getHeight(), bounds);
 
-        block.getComponent().setBounds(insets.left + offsetX + anchorOffset.width, insets.top + offsetY + anchorOffset.height, w, h);
+      for(int i = 0; i < blocks.size(); i++) {
+        blocks.get(i).getComponent().setBounds(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]);
       }
     }
   }
 
-  private static int sumArray(int[] array, int start, int count) {
-    int sum = 0;
-
-    for(int i = start; i < start + count; i++) {
-      sum += array[i];
+  /*
+   * Lays out a snapshot of the engine on the executor, and applies the resulting bounds on the
+   * event dispatch thread if the container was not laid out again or invalidated in the mean time.
+   * As the container was already validated by then, the components which changed size are
+   * validated one by one, which lays out those that are containers themselves.  The spans
+   * calculated by the snapshot are added to the span cache, so laying out the container at the
+   * same size again does not lay out asynchronously again.
+   */
+  private void layOutLater(final Container container) {
+    final LayoutEngine snapshot = engine.copy();
+    final Component[] components = new Component[blocks.size()];
+    final int width = container.getWidth();
+    final int height = container.getHeight();
+    final int count = layoutCount;
+
+    for(int i = 0; i < components.length; i++) {
+      components[i] = blocks.get(i).getComponent();
     }
 
-    return sum;
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        final int[] bounds = new int[components.length * 4];
+
+        snapshot.layout(width, height, bounds);
+
+        EventQueue.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            if(count == layoutCount) {
+              engine.addCachedSpans(snapshot);
+              applyBounds(components, bounds);
+            }
+          }
+        });
+      }
+    });
   }
 
-  private LayoutRequirements[] createLayoutRequirements(int lines, LineLimit[] lineLimits) {
-    LayoutRequirements[] lr = new LayoutRequirements[lines];
+  private void applyBounds(Component[] components, int[] bounds) {
+    applyingBounds = true;
 
-    for(int i = 0; i < lines; i++) {
-      lr[i] = new LayoutRequirements(lineLimits[i].minimum, lineLimits[i].maximum, lineLimits[i].weight);
-    }
-
-    return lr;
-  }
+    try {
+      for(int i = 0; i < components.length; i++) {
+        Component component = components[i];
+        int width = component.getWidth();
+        int height = component.getHeight();
 
-  private int calculateSize(int[] spans, int spanOffset, int spanSize, int spacing) {
-    int size = 0;
+        component.setBounds(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]);
 
-    for(int i = 0; i < spanSize; i++) {
-      if(size != 0) {
-        size += spacing;
+        if(component instanceof Container && (component.getWidth() != width || component.getHeight() != height)) {
+          component.validate();
+        }
       }
-      size += spans[spanOffset + i];
+    }
+    finally {
+      applyingBounds = false;
+    }
+  }
+
+  /*
+   * Returns the insets of the container.  For Swing components the insets are copied into a
+   * reused Insets object, as Container#getInsets() returns a new one on every call.
+   */
+  private Insets getInsets(Container container) {
+    if(container instanceof JComponent) {
+      return ((JComponent)container).getInsets(insets);
     }
 
-    return size;
+    return container.getInsets();
   }
 
   @Override
@@ -339,19 +515,31 @@ public class SmartLayout implements LayoutManager2 {
 
   @Override
   public void removeLayoutComponent(Component comp) {
-    // This would require us to recalculate the position of each Block.  This
-    // functionality does not make a whole lot of sense for this kind of layout
-    // as it would usually result in the entire layout significantly changing.
-//    throw new UnsupportedOperationException();
-//    components.remove(comp);
 
-    List<Block> copy = new ArrayList<Block>(blocks);
+    /*
+     * The remaining components are placed as if they were all added again in order.  Blocks
+     * before the first removed block would end up where they are now, so only the blocks after
+     * it are removed from the matrix and added again, starting at the position of the first
+     * removed block.  Removing the last component therefore only frees its own cells.
+     */
+
+    int first = -1;
 
-    blocks.clear();
-    matrix.clear();
-    insertPosition = 0;
+    for(int i = blocks.size() - 1; i >= 0; i--) {
+      if(blocks.get(i).getComponent().equals(comp)) {
+        first = i;
+      }
+    }
+
+    if(first == -1) {
+      return;
+    }
 
-    for(Block block : copy) {
+    List<Block> removedBlocks = removeBlocks(first);
+
+    layoutConstraintsValid = false;
+
+    for(Block block : removedBlocks) {
       if(!block.getComponent().equals(comp)) {
         addLayoutComponent(block.getComponent(), block.getUserConstraints());
       }
@@ -359,216 +547,99 @@ public class SmartLayout implements LayoutManager2 {
   }
 
   private void calculate(Container parent) {
-    int columns = vertical ? lines : (insertPosition + lines - 1) / lines;
-    int rows = vertical ? (insertPosition + lines - 1) / lines : lines;
 
-    columnLimit = new LineLimit[columns];
-    rowLimit = new LineLimit[rows];
+    /* Layout can be either horizontally based or vertically based.
 
-    if(!blocks.isEmpty()) {
-      calculateLimits(blocks, columnLimit, rowLimit);
+       Horizontal layout means that the number of rows is fixed and objects
+       are evenly distributed among the rows.  Below an example with 2 rows:
 
-      long minHeight = 0;
-      long maxHeight = 0;
+       1 3 5 7 .
+       2 4 6 . .
 
-      for(int r = 0; r < rows; r++) {
-        minHeight += rowLimit[r].minimum;
-        maxHeight += rowLimit[r].maximum;
-      }
+       Vertical layout means that the number of columns is fixed and objects
+       are evenly distributed among the columns.  Below an example with 2
+       columns:
 
-      long minWidth = 0;
-      long maxWidth = 0;
+       1 2
+       3 4
+       5 6
+       7 .
+       . .
 
-      for(int c = 0; c < columns; c++) {
-        minWidth += columnLimit[c].minimum;
-        maxWidth += columnLimit[c].maximum;
-      }
+       Depending on the horizontal or vertical layout, the number of lines
+       which the user specified respectively indicates the number of fixed
+       rows or columns. */
 
-      Insets i = parent.getInsets();
-
-      minWidth += i.left + i.right + (columns-1) * horizontalSpacing;
-      minHeight += i.top + i.bottom + (rows-1) * verticalSpacing;
-      maxWidth += i.left + i.right + (columns-1) * horizontalSpacing;
-      maxHeight += i.top + i.bottom + (rows-1) * verticalSpacing;
+    int columns = vertical ? lines : (insertPosition + lines - 1) / lines;
+    int rows = vertical ? (insertPosition + lines - 1) / lines : lines;
 
-      minimum = new Dimension((int)Math.min(minWidth, Integer.MAX_VALUE), (int)Math.min(minHeight, Integer.MAX_VALUE));
-      maximum = new Dimension((int)Math.min(maxWidth, Integer.MAX_VALUE), (int)Math.min(maxHeight, Integer.MAX_VALUE));
-    }
-    else {
-      minimum = new Dimension(0, 0);
-      maximum = new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
-    }
+    engine.setGridSize(columns, rows);
 
-    layoutConstraintsValid = true;
-  }
+    /*
+     * Measuring a nested container calculates its layout as well; the session opened (or joined)
+     * here is shared by all of them, so each component is measured only once.
+     */
 
-  public static void calculateLimits(List<Block> blocks, LineLimit[] columnLimit, LineLimit[] rowLimit) {
+    LayoutSession session = LayoutSession.open();
 
-    /* Builds a list of the Constraints of each object. */
+    try {
+      for(int i = 0; i < blocks.size(); i++) {
+        Block block = blocks.get(i);
 
-    for(Block block : blocks) {
-      block.getLayoutConstraints().reset();
-    }
-
-    /* The layoutConstraints portion of each Constraint object is fully shared
-       at this point.  Setting the value of the layoutConstraints therefore
-       should take this sharing into account -- completely overriding existing
-       values is not an option. */
-
-    for(Block block : blocks) {
-      LayoutConstraints layoutConstraints = block.getLayoutConstraints();
-      Component c = block.getComponent();
-
-      layoutConstraints.minWidth.setIfLarger(block.getMinWidth());
-      layoutConstraints.minHeight.setIfLarger(block.getMinHeight());
-      layoutConstraints.maxWidth.setIfSmaller(block.getMaxWidth());
-      layoutConstraints.maxHeight.setIfSmaller(block.getMaxHeight());
-
-      // TODO Not sure if this is the idea..
-      if(c instanceof JScrollPane && ((JScrollPane)c).getViewport().getView() instanceof JPanel) {
-        layoutConstraints.minWidth = new LayoutConstraint(1);
-        layoutConstraints.minHeight = new LayoutConstraint(1);
+        block.measure();
+        setCellSizes(engine, i, block);
       }
-
-      // System.out.println("Constraints maxSize = " + c.getMaximumSize() + " : "  + uc.layoutConstraints + " / " + uc + " for " + c);
-      // System.out.println(parent.getName() + ": lc(" + n + ") = " + uc.layoutConstraints);
+    }
+    finally {
+      session.close();
     }
 
-    /* This last loop must be done after setting all values. */
+    Insets i = getInsets(parent);
 
-    for(Block b : blocks) {
-      b.getLayoutConstraints().fixMaximumConstraints();
-    }
+    engine.setInsets(i.top, i.left, i.bottom, i.right);
 
-    /* Set values for horizontal or vertical layout */
+    minimum = new Dimension(engine.getMinimumWidth(), engine.getMinimumHeight());
+    maximum = new Dimension(engine.getMaximumWidth(), engine.getMaximumHeight());
 
-    for(int i = 0; i < columnLimit.length; i++) {
-      columnLimit[i] = new LineLimit();
-    }
+    layoutConstraintsValid = true;
+  }
 
-    for(int i = 0; i < rowLimit.length; i++) {
-      rowLimit[i] = new LineLimit();
+  /*
+   * Passes the measured sizes and weights of a block to the engine.  The engine only calculates the
+   * limits again when they differ from the sizes and weights it already has.
+   */
+  private static void setCellSizes(LayoutEngine engine, int cell, Block block) {
+    int minWidth = block.getMinWidth();
+    int minHeight = block.getMinHeight();
+
+    if(block.ignoresMinimumSize()) {
+      minWidth = 1;
+      minHeight = 1;
     }
 
-    // TODO does not yet perform correct calculations for components with a span > 1
-
-//    {
-//      List<Block> sortedBlocks = new ArrayList<Block>(blocks);
-//      Collections.sort(sortedBlocks, SPAN_X_COMPARATOR);
-//
-//      for(Block b : sortedBlocks) {
-////          System.out.println("Column Processing " + b);
-//        Constraints constraints = b.getUserConstraints();
-//        LayoutConstraints lc = constraints.layoutConstraints;
-//        int c = b.getX();
-//
-//        columnLimit[c].increaseMinimum(lc.minWidth.get());
-//        columnLimit[c].increasePreferred(lc.minWidth.get());
-//        columnLimit[c].increaseMaximum(lc.maxWidth.get());
-//        columnLimit[c].increaseWeight(constraints.getWeightX());
-//      }
-//    }
-
-    calculateLimits(blocks, columnLimit, true);
-    calculateLimits(blocks, rowLimit, false);
-
-//      System.out.println("cols = " + Arrays.toString(columnLimit));
-//      System.out.println("rows = " + Arrays.toString(rowLimit));
-
-//      for(int i = 0; i < blocks.size(); i++) {
-//        Block b = blocks.get(i);
-//
-//        Constraints constraints = b.getUserConstraints();
-//        int c = b.getX();
-//        int r = b.getY();
-//
-//        LayoutConstraints lc = constraints.layoutConstraints;
-//
-//        columnLimit[c].increaseMinimum(lc.minWidth.get());
-//        columnLimit[c].increasePreferred(lc.minWidth.get());
-//        columnLimit[c].increaseMaximum(lc.maxWidth.get());
-//        columnLimit[c].setWeight(constraints.getWeightX());
-//
-//        rowLimit[r].increaseMinimum(lc.minHeight.get());
-//        rowLimit[r].increasePreferred(lc.minHeight.get());
-//        rowLimit[r].increaseMaximum(lc.maxHeight.get());
-//        rowLimit[r].setWeight(constraints.getWeightY());
-//      }
-
-//    for(int r = 0; r < rows; r++) {
-//      for(int c = 0; c < columns; c++) {
-//        int n = vertical ? r * columns + c : c * rows + r;
-//
-//        /* It is possible that there are less components in this
-//           group than rows*columns.  In this case the remaining
-//           empty spaces are ignored. */
-//
-//        if(n < size) {
-//          Constraints constraints = userConstraints.get(n);
-//          LayoutConstraints lc = constraints.layoutConstraints;
-//
-//          columnLimit[c].increaseMinimum(lc.minWidth.get());
-//          columnLimit[c].increasePreferred(lc.minWidth.get());
-//          columnLimit[c].increaseMaximum(lc.maxWidth.get());
-//          // System.out.println("column, row = "+c+", "+r+": maxWidth, maxHeight = "+lc.maxHeight.get()+", "+lc.maxWidth.get());
-//          columnLimit[c].setWeight(constraints.getWeightX());
-//
-//          rowLimit[r].increaseMinimum(lc.minHeight.get());
-//          rowLimit[r].increasePreferred(lc.minHeight.get());
-//          rowLimit[r].increaseMaximum(lc.maxHeight.get());
-//          rowLimit[r].setWeight(constraints.getWeightY());
-//        }
-//      }
-//    }
-  }
-
-  private static void calculateLimits(List<Block> blocks, LineLimit[] lineLimit, boolean x) {
-    List<Block> sortedBlocks = new ArrayList<Block>(blocks);
-    Collections.sort(sortedBlocks, SPAN_Y_COMPARATOR);
-
-    for(Block b : sortedBlocks) {
-//        System.out.println("Row Processing " + b);
-
-      // JOHNTODO Simply, and do this for columns as well
-      // JOHNTODO Minimums are handled for spans > 1, what about maximum?
-      // JOHNTODO Are we happy with how weights are handled?  Span3 = 3.0, and 1.0 + 1.0 + 1.5 = 3.5...
-      // JOHNTODO Is preferred used?
-      // JOHNTODO What about row/column code similarity?
-
-      LineLimit blockLimit = x ? b.getLimitsX() : b.getLimitsY();
-      Constraints constraints = b.getUserConstraints();
-
-      int span = x ? constraints.getSpanX() : constraints.getSpanY();
-      int position = x ? b.getX() : b.getY();
-
-      //LayoutConstraints lc = constraints.layoutConstraints;
-      if(span == 1) {
-        lineLimit[position].increaseMinimum(blockLimit.minimum);
-        lineLimit[position].increasePreferred(blockLimit.minimum);
-        lineLimit[position].increaseMaximum(blockLimit.maximum);
-        lineLimit[position].increaseWeight(blockLimit.weight);
-      }
-      else {
-        LayoutRequirements[] lr = new LayoutRequirements[span];
+    engine.setCellSizes(cell, minWidth, minHeight, block.getMaxWidth(), block.getMaxHeight(), block.getWeightX(), block.getWeightY());
+  }
 
-        for(int r = 0; r < span; r++) {
-          LineLimit limit = lineLimit[r + position];
-          lr[r] = new LayoutRequirements(limit.minimum, limit.maximum, limit.weight);
-          // System.out.println(lr[r]);
-        }
+  /**
+   * Returns the number of times the limits of the columns and rows were calculated, as opposed to
+   * being kept because nothing changed.
+   */
+  int getLimitCalculationCount() {
+    return engine.getLimitCalculationCount();
+  }
 
-        int[] results = LayoutRequirements.calculateTiledPositions(blockLimit.minimum, lr);
-        // System.out.println("calculateTiledPositions(" + blockLimit.minimum + ") --> " + Arrays.toString(results));
+  public static void calculateLimits(List<Block> blocks, LineLimit[] columnLimit, LineLimit[] rowLimit) {
+    LayoutEngine engine = new LayoutEngine();
 
-        for(int r = 0; r < span; r++) {
-          LineLimit limit = lineLimit[r + position];
+    engine.setGridSize(columnLimit.length, rowLimit.length);
 
-          limit.increaseMinimum(results[r]);
-//          limit.increasePreferred(lc.minHeight.get());
-  //        limit.increaseMaximum(lc.maxHeight.get());
-    //      limit.increaseWeight(constraints.getWeightY());
-        }
-      }
+    for(Block block : blocks) {
+      int cell = engine.addCell(block.getX(), block.getY(), block.getUserConstraints().getSpanX(), block.getUserConstraints().getSpanY());
+
+      block.measure();
+      setCellSizes(engine, cell, block);
     }
+
+    engine.getLimits(columnLimit, rowLimit);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package hs.smartlayout;
+
+/**
+ * A small cache of the spans of the lines along one axis, keyed by the space they were calculated
+ * for.  When a window is being resized the same sizes tend to come back, and as long as the limits
+ * of the lines do not change their spans can be reused.  When the cache is full the least recently
+ * used spans are replaced, reusing their array.<p>
+ *
+ * This class is not thread safe.
+ */
+class SpanCache {
+  private final int[] spaces;
+  private final int[][] spans;
+  private final long[] lastUsed;
+
+  private int size;
+  private long useCount;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param capacity the maximum number of spans to keep, cannot be negative
+   */
+  public SpanCache(int capacity) {
+    if(capacity < 0) {
+      throw new IllegalArgumentException("capacity cannot be negative: " + capacity);
+    }
+
+    this.spaces = new int[capacity];
+    this.spans = new int[capacity][];
+    this.lastUsed = new long[capacity];
+  }
+
+  /**
+   * Returns the spans calculated for the given space, or null if they are not in the cache.  The
+   * returned array may be longer than the number of lines, and must not be modified.
+   *
+   * @param space a space
+   * @return the spans calculated for the given space, or null if they are not in the cache
+   */
+  public int[] get(int space) {
+    for(int i = 0; i < size; i++) {
+      if(spaces[i] == space) {
+        lastUsed[i] = ++useCount;
+        hitCount++;
+
+        return spans[i];
+      }
+    }
+
+    missCount++;
+
+    return null;
+  }
+
+  /**
+   * Returns whether the spans for the given space are in the cache, without counting it as a hit
+   * or a miss.
+   *
+   * @param space a space
+   * @return true if the spans for the given space are in the cache
+   */
+  public boolean contains(int space) {
+    for(int i = 0; i < size; i++) {
+      if(spaces[i] == space) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns an array to store the spans for the given space in, replacing the least recently used
+   * spans if the cache is full.  If the cache has no capacity, a new array is returned every time.
+   *
+   * @param space a space
+   * @param lineCount the number of lines
+   * @return an array of at least lineCount elements to store the spans in
+   */
+  public int[] add(int space, int lineCount) {
+    if(spans.length == 0) {
+      return new int[lineCount];
+    }
+
+    int index = 0;
+
+    if(size < spans.length) {
+      index = size++;
+    }
+    else {
+      for(int i = 1; i < size; i++) {
+        if(lastUsed[i] < lastUsed[index]) {
+          index = i;
+        }
+      }
+    }
+
+    if(spans[index] == null || spans[index].length < lineCount) {
+      spans[index] = new int[lineCount];
+    }
+
+    spaces[index] = space;
+    lastUsed[index] = ++useCount;
+
+    return spans[index];
+  }
+
+  /**
+   * Adds the spans of the given cache which are not in this cache yet.  Both caches must hold
+   * spans calculated for the same lines.
+   *
+   * @param other a cache
+   * @param lineCount the number of lines
+   */
+  public void addAll(SpanCache other, int lineCount) {
+    for(int i = 0; i < other.size; i++) {
+      if(!contains(other.spaces[i])) {
+        System.arraycopy(other.spans[i], 0, add(other.spaces[i], lineCount), 0, lineCount);
+      }
+    }
+  }
+
+  /**
+   * Removes all spans from the cache.  The arrays are kept, to be reused for new spans.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  public int getCapacity() {
+    return spans.length;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+}
@@ -0,0 +1,130 @@
+package hs.smartlayout;
+
+import java.util.Arrays;
+
+/**
+ * Keeps cells ordered by their span along one axis.  Cells with the same span are kept in the
+ * order in which they were added, which is the order a stable sort of the cells would give.<p>
+ *
+ * This class is not thread safe.
+ */
+class SpanIndex {
+  private int[] cells;
+  private int[] spans;
+  private int size;
+
+  public SpanIndex() {
+    this.cells = new int[16];
+    this.spans = new int[16];
+  }
+
+  /**
+   * Creates a copy of the given index.
+   *
+   * @param other an index
+   */
+  public SpanIndex(SpanIndex other) {
+    this.cells = other.cells.clone();
+    this.spans = other.spans.clone();
+    this.size = other.size;
+  }
+
+  /**
+   * Adds a cell after all cells with a smaller or equal span.
+   *
+   * @param cell a cell
+   * @param span the span of the cell
+   */
+  public void add(int cell, int span) {
+    ensureCapacity(size + 1);
+
+    int index = findEnd(span);
+
+    System.arraycopy(cells, index, cells, index + 1, size - index);
+    System.arraycopy(spans, index, spans, index + 1, size - index);
+
+    cells[index] = cell;
+    spans[index] = span;
+    size++;
+  }
+
+  /**
+   * Removes the given cell.  Removing the cell with a given span which was added last is fast,
+   * as the search for the cell starts at the end of the cells with the same span.
+   *
+   * @param cell a cell
+   * @param span the span of the cell
+   * @return true if the cell was removed
+   */
+  public boolean remove(int cell, int span) {
+    for(int i = findEnd(span) - 1; i >= 0 && spans[i] == span; i--) {
+      if(cells[i] == cell) {
+        System.arraycopy(cells, i + 1, cells, i, size - i - 1);
+        System.arraycopy(spans, i + 1, spans, i, size - i - 1);
+        size--;
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the cell at the given index in span order.
+   *
+   * @param index an index
+   * @return the cell at the given index in span order
+   */
+  public int get(int index) {
+    return cells[index];
+  }
+
+  /**
+   * Returns the span of the cell at the given index in span order.
+   *
+   * @param index an index
+   * @return the span of the cell at the given index in span order
+   */
+  public int getSpan(int index) {
+    return spans[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public void ensureCapacity(int capacity) {
+    if(capacity > cells.length) {
+      int newLength = Math.max(capacity, cells.length * 2);
+
+      cells = Arrays.copyOf(cells, newLength);
+      spans = Arrays.copyOf(spans, newLength);
+    }
+  }
+
+  /*
+   * Returns the index after the last cell with a span smaller than or equal to the given span.
+   */
+  private int findEnd(int span) {
+    int low = 0;
+    int high = size;
+
+    while(low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(spans[mid] <= span) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+}
@@ -1,39 +1,78 @@
 package hs.smartlayout.classic;
 
 import hs.smartlayout.LayoutRequirements;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
-import hs.smartlayout.distributor.SpaceDistributor;
 
 import java.util.List;
 
-public class ClassicSpaceDistributor implements SpaceDistributor {
+/**
+ * Distributes space over columns which each have at most one limit.  Groups and limits spanning
+ * multiple columns are not supported.<p>
+ *
+ * This class keeps the arrays it needs between calls, and is therefore not thread safe.
+ */
+public class ClassicSpaceDistributor extends AbstractSpaceDistributor {
+  private int[] minimums = new int[0];
+  private int[] maximums = new int[0];
+  private double[] weights = new double[0];
+  private int[] order = new int[0];
+  private int[] orderBuffer = new int[0];
 
   @Override
-  public int[] distribute(int space, int columnCount, List<Limit> restrictions, Group rootGroup) {
-    if(rootGroup.hasChildren()) {
-      throw new IllegalArgumentException("only one group is supported, child groups are not allowed");
-    }
+  public void distributeInto(int space, int columnCount, List<Limit> restrictions, Group rootGroup, int[] sizes) {
+    prepare(columnCount, restrictions, rootGroup);
 
-    LayoutRequirements[] layoutRequirements = createLayoutRequirements(columnCount);
+    LayoutRequirements.calculateTiledPositions(space, columnCount, minimums, maximums, weights, order, orderBuffer, sizes);
+  }
 
-    for(Limit res : restrictions) {
-      if(res.startColumn != res.endColumn) {
-        throw new IllegalArgumentException("multi-column restrictions are not supported");
-      }
-      layoutRequirements[res.startColumn] = new LayoutRequirements(res.getMinSize(), res.getMaxSize(), res.getWeight());
+  @Override
+  public int[][] distributeAll(int[] spaces, int columnCount, List<Limit> restrictions, Group rootGroup) {
+    int[][] results = new int[spaces.length][];
+
+    prepare(columnCount, restrictions, rootGroup);
+
+    for(int i = 0; i < spaces.length; i++) {
+      results[i] = new int[columnCount];
+
+      LayoutRequirements.calculateTiledPositions(spaces[i], columnCount, minimums, maximums, weights, order, orderBuffer, results[i]);
     }
 
-    return LayoutRequirements.calculateTiledPositions(space, layoutRequirements);
+    return results;
   }
 
-  private static LayoutRequirements[] createLayoutRequirements(int columnCount) {
-    LayoutRequirements[] layoutRequirements = new LayoutRequirements[columnCount];
+  /*
+   * Fills in the minimums, maximums and weights of the columns from the restrictions.
+   */
+  private void prepare(int columnCount, List<Limit> restrictions, Group rootGroup) {
+    if(rootGroup.hasChildren()) {
+      throw new IllegalArgumentException("only one group is supported, child groups are not allowed");
+    }
+
+    if(minimums.length < columnCount) {
+      minimums = new int[columnCount];
+      maximums = new int[columnCount];
+      weights = new double[columnCount];
+      order = new int[columnCount];
+      orderBuffer = new int[columnCount];
+    }
 
     for(int i = 0; i < columnCount; i++) {
-      layoutRequirements[i] = new LayoutRequirements(0, Integer.MAX_VALUE, 1.0);
+      minimums[i] = 0;
+      maximums[i] = Integer.MAX_VALUE;
+      weights[i] = 1.0;
     }
 
-    return layoutRequirements;
+    for(int i = 0; i < restrictions.size(); i++) {
+      Limit res = restrictions.get(i);
+
+      if(res.startColumn != res.endColumn) {
+        throw new IllegalArgumentException("multi-column restrictions are not supported");
+      }
+      minimums[res.startColumn] = res.getMinSize();
+      maximums[res.startColumn] = res.getMaxSize();
+      weights[res.startColumn] = res.getWeight();
+    }
   }
 }
@@ -0,0 +1,56 @@
+package hs.smartlayout.distributor;
+
+import java.util.List;
+
+/**
+ * Base class for space distributors which can store the sizes of the columns in a given array,
+ * and which can distribute several spaces at once.<p>
+ *
+ * Implementations may keep scratch state between calls to avoid allocating memory when
+ * distributing space for a problem of the same shape again.  An instance must therefore not be
+ * used by more than one thread at a time; use a separate instance for each thread instead.
+ */
+public abstract class AbstractSpaceDistributor implements SpaceDistributor {
+
+  @Override
+  public int[] distribute(int space, int columnCount, List<Limit> limits, Group rootGroup) {
+    int[] sizes = new int[columnCount];
+
+    distributeInto(space, columnCount, limits, rootGroup, sizes);
+
+    return sizes;
+  }
+
+  /**
+   * Distributes space in the same way as {@link #distribute(int, int, List, Group)}, but stores
+   * the sizes of the columns in the given array instead of returning a new one.
+   *
+   * @param space the space to distribute
+   * @param columnCount the number of columns
+   * @param limits the limits of the columns
+   * @param rootGroup the group containing all columns
+   * @param sizes an array of at least columnCount elements to store the sizes of the columns in
+   */
+  public abstract void distributeInto(int space, int columnCount, List<Limit> limits, Group rootGroup, int[] sizes);
+
+  /**
+   * Distributes each of the given spaces in the same way as {@link #distribute(int, int, List, Group)}.
+   * Subclasses can override this to do work which does not depend on the space, like fixing the
+   * minimums, only once for all spaces; by default the spaces are distributed one at a time.
+   *
+   * @param spaces the spaces to distribute, in any order
+   * @param columnCount the number of columns
+   * @param limits the limits of the columns
+   * @param rootGroup the group containing all columns
+   * @return the sizes of the columns for each of the spaces, in the order of the spaces
+   */
+  public int[][] distributeAll(int[] spaces, int columnCount, List<Limit> limits, Group rootGroup) {
+    int[][] results = new int[spaces.length][];
+
+    for(int i = 0; i < spaces.length; i++) {
+      results[i] = distribute(spaces[i], columnCount, limits, rootGroup);
+    }
+
+    return results;
+  }
+}
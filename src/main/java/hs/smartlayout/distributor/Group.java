@@ -1,5 +1,8 @@
 package hs.smartlayout.distributor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Group {
   public int start;
   public int end;
@@ -8,6 +11,8 @@ public class Group {
   private final int columnCount;
 
   private Group parent;
+  private Tree tree;
+  private int index;
 
   public static Group create(Group... groups) {
     Group root = new Group(groups);
@@ -21,12 +26,39 @@ public class Group {
     return root;
   }
 
-  private static void initialize(Group group, int offset) {
+  private static void initialize(Group root, int offset) {
+    List<Group> groups = new ArrayList<Group>();
+
+    initialize(root, offset, groups);
+
+    Tree tree = new Tree(groups.toArray(new Group[groups.size()]), root.columnCount);
+
+    for(int i = 0; i < tree.groups.length; i++) {
+      Group group = tree.groups[i];
+
+      group.tree = tree;
+      tree.parents[i] = group.parent == null ? -1 : group.parent.index;
+      tree.starts[i] = group.start;
+      tree.ends[i] = group.end;
+
+      if(group.children.length == 0) {
+        for(int column = group.start; column <= group.end; column++) {
+          tree.leaves[column - offset] = i;
+        }
+      }
+    }
+  }
+
+  private static void initialize(Group group, int offset, List<Group> groups) {
     group.start = offset;
     group.end = offset + group.columnCount - 1;
+    group.index = groups.size();
+    group.parent = null;
+
+    groups.add(group);
 
     for(Group child : group.children) {
-      initialize(child, offset);
+      initialize(child, offset, groups);
       child.parent = group;
       offset += child.columnCount;
     }
@@ -65,6 +97,10 @@ public class Group {
   }
 
   public Group getGroup(int column) {
+    if(tree != null) {
+      return contains(column) ? tree.groups[tree.leaves[column - tree.groups[0].start]] : this;
+    }
+
     for(Group child : children) {
       if(child.contains(column)) {
         return child.getGroup(column);
@@ -73,4 +109,84 @@ public class Group {
 
     return this;
   }
+
+  /*
+   * The methods below give access to a flattened representation of the tree this group is part of,
+   * which is precomputed by create().  A group constructed directly becomes the root of its own
+   * tree when one of these methods is first called, numbering the columns of its descendants from
+   * its start column just like create() does.  Groups are numbered depth first, so the root group
+   * is group 0 and the children of a group always have a higher number than the group itself.
+   */
+
+  /**
+   * Returns the number of this group within its tree.
+   */
+  public int getIndex() {
+    getTree();
+
+    return index;
+  }
+
+  /**
+   * Returns the number of groups in the tree this group is part of.
+   */
+  public int getGroupCount() {
+    return getTree().groups.length;
+  }
+
+  /**
+   * Returns the number of the smallest group containing the given column, or 0 (the root) for
+   * columns outside the tree.
+   */
+  public int getLeafIndex(int column) {
+    Tree tree = getTree();
+    int leafIndex = column - tree.groups[0].start;
+
+    return leafIndex >= 0 && leafIndex < tree.leaves.length ? tree.leaves[leafIndex] : 0;
+  }
+
+  /**
+   * Returns the number of the parent of the given group, or -1 if the given group is the root.
+   */
+  public int getParentIndex(int index) {
+    return getTree().parents[index];
+  }
+
+  /**
+   * Returns the first column of the given group.
+   */
+  public int getStart(int index) {
+    return getTree().starts[index];
+  }
+
+  /**
+   * Returns the last column of the given group.
+   */
+  public int getEnd(int index) {
+    return getTree().ends[index];
+  }
+
+  private Tree getTree() {
+    if(tree == null) {
+      initialize(this, start);
+    }
+
+    return tree;
+  }
+
+  private static class Tree {
+    final Group[] groups;
+    final int[] leaves;
+    final int[] parents;
+    final int[] starts;
+    final int[] ends;
+
+    Tree(Group[] groups, int columnCount) {
+      this.groups = groups;
+      this.leaves = new int[columnCount];
+      this.parents = new int[groups.length];
+      this.starts = new int[groups.length];
+      this.ends = new int[groups.length];
+    }
+  }
 }
\ No newline at end of file
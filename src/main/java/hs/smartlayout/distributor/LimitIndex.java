@@ -0,0 +1,84 @@
+package hs.smartlayout.distributor;
+
+import java.util.List;
+
+/**
+ * An index of the limits covering each column, built once per distribution so the limits of a
+ * column can be found without checking every limit.
+ */
+public class LimitIndex {
+  private Limit[] limits = new Limit[0];
+  private int[][] columnLimits = new int[0][];
+  private int[] limitCounts = new int[0];
+
+  /**
+   * Creates an index for the given limits, which are referred to by their position in the list.
+   */
+  public LimitIndex(int columnCount, List<Limit> limits) {
+    reset(columnCount, limits);
+  }
+
+  /**
+   * Replaces the indexed limits, reusing the arrays of the previous index where possible.
+   */
+  public void reset(int columnCount, List<Limit> limits) {
+    if(limitCounts.length != columnCount) {
+      limitCounts = new int[columnCount];
+      columnLimits = new int[columnCount][];
+    }
+    if(this.limits.length != limits.size()) {
+      this.limits = new Limit[limits.size()];
+    }
+
+    for(int j = 0; j < columnCount; j++) {
+      limitCounts[j] = 0;
+    }
+
+    for(int i = 0; i < limits.size(); i++) {
+      Limit limit = limits.get(i);
+
+      this.limits[i] = limit;
+
+      for(int k = Math.max(0, limit.startColumn); k <= Math.min(columnCount - 1, limit.endColumn); k++) {
+        limitCounts[k]++;
+      }
+    }
+
+    for(int j = 0; j < columnCount; j++) {
+      if(columnLimits[j] == null || columnLimits[j].length != limitCounts[j]) {
+        columnLimits[j] = new int[limitCounts[j]];
+      }
+
+      limitCounts[j] = 0;
+    }
+
+    for(int i = 0; i < limits.size(); i++) {
+      Limit limit = limits.get(i);
+
+      for(int k = Math.max(0, limit.startColumn); k <= Math.min(columnCount - 1, limit.endColumn); k++) {
+        columnLimits[k][limitCounts[k]++] = i;
+      }
+    }
+  }
+
+  /**
+   * Returns the positions of the limits covering the given column; the array must not be modified.
+   */
+  public int[] getLimitIndices(int column) {
+    return columnLimits[column];
+  }
+
+  /**
+   * Returns the limit at the given position.
+   */
+  public Limit getLimit(int index) {
+    return limits[index];
+  }
+
+  /**
+   * Returns the number of indexed limits.
+   */
+  public int getLimitCount() {
+    return limits.length;
+  }
+}
@@ -0,0 +1,101 @@
+package hs.smartlayout.multicolumn;
+
+import java.util.Arrays;
+
+/**
+ * The state of the columns while space is being distributed, stored as parallel arrays indexed by
+ * column.  A distributor keeps a single instance and resets it for every distribution; the arrays
+ * are only allocated again when the number of columns changes.<p>
+ *
+ * This class is not thread safe.
+ */
+class ColumnState {
+  int[] sizes = new int[0];
+  int[] minimumSizes = new int[0];
+  double[] weights = new double[0];
+  double[] weightOffsets = new double[0];
+
+  /*
+   * Scratch space for sorting a range of columns and for calculations of the distributors.
+   */
+
+  int[] order = new int[0];
+  int[] orderBuffer = new int[0];
+  double[] sortKeys = new double[0];
+  int[] maximumSizes = new int[0];
+  double[] tiledWeights = new double[0];
+  int[] lostPixels = new int[0];
+
+  /**
+   * Prepares the state for distributing space over the given number of columns.  All columns start
+   * with a size and minimum size of zero and a weight of 1.0.
+   *
+   * @param columnCount the number of columns
+   */
+  public void reset(int columnCount) {
+    if(sizes.length != columnCount) {
+      sizes = new int[columnCount];
+      minimumSizes = new int[columnCount];
+      weights = new double[columnCount];
+      weightOffsets = new double[columnCount];
+      order = new int[columnCount];
+      orderBuffer = new int[columnCount];
+      sortKeys = new double[columnCount];
+      maximumSizes = new int[columnCount];
+      tiledWeights = new double[columnCount];
+      lostPixels = new int[columnCount];
+    }
+
+    Arrays.fill(sizes, 0);
+    Arrays.fill(minimumSizes, 0);
+    Arrays.fill(weights, 1.0);
+    Arrays.fill(weightOffsets, 0);
+  }
+
+  /**
+   * Returns the columns in the given range ordered by descending standard weight (minimum size
+   * divided by weight), keeping columns with equal standard weights in column order.  The returned
+   * array is only valid until the next call and only its first endColumn - startColumn + 1 entries
+   * are used.
+   *
+   * @param startColumn the first column, inclusive
+   * @param endColumn the last column, inclusive
+   * @return the columns in the given range ordered by descending standard weight
+   */
+  public int[] sortByDescendingStandardWeight(int startColumn, int endColumn) {
+    int count = endColumn - startColumn + 1;
+
+    for(int i = 0; i < count; i++) {
+      order[i] = startColumn + i;
+      sortKeys[startColumn + i] = minimumSizes[startColumn + i] / weights[startColumn + i];
+    }
+
+    int[] source = order;
+    int[] target = orderBuffer;
+
+    for(int width = 1; width < count; width *= 2) {
+      for(int start = 0; start < count; start += width * 2) {
+        int middle = Math.min(start + width, count);
+        int end = Math.min(start + width * 2, count);
+        int left = start;
+        int right = middle;
+
+        for(int i = start; i < end; i++) {
+          if(left < middle && (right >= end || Double.compare(sortKeys[source[right]], sortKeys[source[left]]) <= 0)) {
+            target[i] = source[left++];
+          }
+          else {
+            target[i] = source[right++];
+          }
+        }
+      }
+
+      int[] swap = source;
+
+      source = target;
+      target = swap;
+    }
+
+    return source;
+  }
+}
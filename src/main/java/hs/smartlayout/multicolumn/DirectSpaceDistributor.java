@@ -1,65 +1,146 @@
 package hs.smartlayout.multicolumn;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
 
 import hs.smartlayout.LayoutRequirements;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
-import hs.smartlayout.distributor.SpaceDistributor;
-
-public class DirectSpaceDistributor implements SpaceDistributor {
+import hs.smartlayout.distributor.LimitIndex;
+
+/**
+ * Distributes space by first dividing it by weight, and then applying the maximums in the order
+ * they would be reached when the space grows.  As the result for a larger space does not build on
+ * the result for a smaller one, {@link #distributeAll(int[], int, List, Group)} only shares the
+ * minimums and the index of the limits between the spaces.<p>
+ *
+ * This class keeps the state it needs between calls, and is therefore not thread safe.
+ */
+public class DirectSpaceDistributor extends AbstractSpaceDistributor {
   private static final boolean VERBOSE = false;
 
+  private final MinimumSolverCache minimumSolverCache = new MinimumSolverCache();
+  private final ColumnState state = new ColumnState();
+  private final Solver solver = new Solver(state);
+
   @Override
-  public int[] distribute(int space, int columnCount, List<Limit> limits, Group rootGroup) {
-    Column[] columns = new Column[columnCount];
-    int[] sizes = new int[columnCount];
+  public void distributeInto(int space, int columnCount, List<Limit> limits, Group rootGroup, int[] sizes) {
+    state.reset(columnCount);
 
-    for(int i = 0; i < columnCount; i++) {
-      columns[i] = new Column(i);
-      columns[i].weight = 1.0;
-    }
+    space -= minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, limits);
+
+    System.arraycopy(state.sizes, 0, state.minimumSizes, 0, columnCount);
 
-    space -= MinimumSolver.fixMinimums(sizes, columns, rootGroup, limits);
+    solver.reset(rootGroup, limits);
+    solver.fixRest2(space);
+
+    System.arraycopy(state.sizes, 0, sizes, 0, columnCount);
+  }
+
+  @Override
+  public int[][] distributeAll(int[] spaces, int columnCount, List<Limit> limits, Group rootGroup) {
+    int[][] results = new int[spaces.length][];
 
-    for(int i = 0; i < columns.length; i++) {
-      columns[i].minimumSize = sizes[i];
+    state.reset(columnCount);
+
+    int minimumSpace = minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, limits);
+    int[] minimumSizes = state.sizes.clone();
+    double[] minimumWeights = state.weights.clone();
+
+    solver.reset(rootGroup, limits);
+
+    for(int i = 0; i < spaces.length; i++) {
+      System.arraycopy(minimumSizes, 0, state.sizes, 0, columnCount);
+      System.arraycopy(minimumSizes, 0, state.minimumSizes, 0, columnCount);
+      System.arraycopy(minimumWeights, 0, state.weights, 0, columnCount);
+      Arrays.fill(state.weightOffsets, 0);
+
+      solver.fixRest2(spaces[i] - minimumSpace);
+
+      results[i] = Arrays.copyOf(state.sizes, columnCount);
     }
 
-    return new Solver(columns, rootGroup, limits).fixRest2(space);
+    return results;
   }
 
+  /*
+   * Solves the distribution for the columns in a ColumnState.  A single instance is reused for
+   * every distribution, and only allocates memory when the shape of the problem changes.
+   */
   private static class Solver {
-    private final Column[] columns;
-    private final Group rootGroup;
-    private final List<Limit> limits;
+    private final ColumnState state;
+    private final FenwickTree sizeSums = new FenwickTree(new int[0]);
+    private final LimitIndex limitIndex = new LimitIndex(0, Collections.<Limit>emptyList());
+    private final IndexedHeap uncheckedLimits = new IndexedHeap(new double[0]);
+
+    private int[] sizes;
+    private int[] minimumSizes;
+    private double[] weights;
+    private double[] weightOffsets;
+    private Group rootGroup;
+    private List<Limit> limits;
+
+    private GroupAggregates aggregates;
 
-    public Solver(Column[] columns, Group rootGroup, List<Limit> limits) {
-      this.columns = columns;
+    /*
+     * The limits which have not been checked yet, ordered by the standard weight at which they
+     * reach their maximum.  When columns change, the limits containing them are marked and their
+     * standard weights are recalculated just before the next limit is taken.
+     */
+
+    private double[] standardWeights = new double[0];
+    private boolean[] changedLimits = new boolean[0];
+    private int[] changedLimitIndices = new int[0];
+    private double[] changedStandardWeights = new double[0];
+    private int changedLimitCount;
+
+    public Solver(ColumnState state) {
+      this.state = state;
+    }
+
+    /*
+     * Prepares for distributing space over the columns of the state with the given groups and
+     * limits, indexing the limits.  The state must already have been reset for the number of
+     * columns.
+     */
+    private void reset(Group rootGroup, List<Limit> limits) {
       this.rootGroup = rootGroup;
       this.limits = limits;
+
+      limitIndex.reset(state.weights.length, limits);
     }
 
-    private int[] fixRest2(int space) {
-      LayoutRequirements[] requirements = new LayoutRequirements[columns.length];
+    /*
+     * Distributes the given space over the columns of the state, starting from the minimum sizes
+     * in the state.  The resulting sizes are stored in the state.
+     */
+    private void fixRest2(int space) {
+      this.sizes = state.sizes;
+      this.minimumSizes = state.minimumSizes;
+      this.weights = state.weights;
+      this.weightOffsets = state.weightOffsets;
+
       // Assign space by weight
 
-      double totalWeight = 0;
       int assignedSpace = 0;
 
-      for(int i = 0; i < columns.length; i++) {
-        assignedSpace += columns[i].minimumSize;
-        totalWeight += columns[i].weight;
-        requirements[i] = new LayoutRequirements(columns[i].minimumSize, Integer.MAX_VALUE, columns[i].weight);
+      for(int i = 0; i < weights.length; i++) {
+        assignedSpace += minimumSizes[i];
+        state.maximumSizes[i] = Integer.MAX_VALUE;
+        state.tiledWeights[i] = weights[i];
       }
 
-      int[] sizes = LayoutRequirements.calculateTiledPositions(assignedSpace + space, requirements);
+      LayoutRequirements.calculateTiledPositions(assignedSpace + space, weights.length, minimumSizes, state.maximumSizes, state.tiledWeights, state.order, state.orderBuffer, sizes);
+
+      sizeSums.reset(sizes);
 
-      for(int i = 0; i < columns.length; i++) {
-        columns[i].size = sizes[i];
+      if(aggregates == null) {
+        aggregates = new GroupAggregates(rootGroup, weights, sizes);
+      }
+      else {
+        aggregates.reset(rootGroup, weights, sizes);
       }
 
 //      solveMinimums();
@@ -78,10 +159,10 @@ public class DirectSpaceDistributor implements SpaceDistributor {
        * reached.
        */
 
-      List<Limit> uncheckedLimits = new ArrayList<Limit>(limits);
+      initializeCandidates();
 
       for(;;) {
-        Limit bestLimit = findEarliestMaximum(uncheckedLimits);
+        Limit bestLimit = findEarliestMaximum();
 
         if(bestLimit == null || !exceedsMaximumSize(bestLimit)) {
           break;
@@ -92,117 +173,134 @@ public class DirectSpaceDistributor implements SpaceDistributor {
         // a) Redivide pixels (if group) by weight and minimums -- keep track where pixels are lost
         // b) For each column that is covered by the restriction set weight to 0 and do a fixMaximums.  Assign the lost pixels based on the column.
 
-        int[] lostPixels = lowerToMatchMaximum(bestLimit);
+        lowerToMatchMaximum(bestLimit);
+        redivideMaximum(bestLimit, state.lostPixels);
+      }
+    }
 
-        uncheckedLimits.remove(bestLimit);  // remove, as minimums may cause a maximum to be violated
+    private void initializeCandidates() {
+      int limitCount = limits.size();
 
-        redivideMaximum(bestLimit, lostPixels);
+      if(standardWeights.length != limitCount) {
+        standardWeights = new double[limitCount];
+        changedLimits = new boolean[limitCount];
+        changedLimitIndices = new int[limitCount];
+        changedStandardWeights = new double[limitCount];
       }
 
-      for(int i = 0; i < columns.length; i++) {
-        sizes[i] = columns[i].size;
+      for(int i = 0; i < limitCount; i++) {
+        standardWeights[i] = calculateMaximumStandardWeight(limitIndex.getLimit(i));
       }
 
-      return sizes;
+      uncheckedLimits.reset(standardWeights, limitCount);
+      changedLimitCount = 0;
     }
 
     /*
-     * Traverses all limits and returns the one which would reach its maximum first.  Also checks
-     * if maximum was actually reached... which is a 2nd thing this function does.
+     * Returns the unchecked limit which would reach its maximum first, and removes it from the
+     * unchecked limits (remove, as minimums may cause a maximum to be violated).  Limits reaching
+     * their maximum at the same standard weight are returned in the order they were supplied.
      */
-    private Limit findEarliestMaximum(List<Limit> limits) {
-      Limit bestLimit = null;
-      double lowestStandardWeight = Double.MAX_VALUE;  // TODO Double.POSITIVE_INFINITY ??
-
-      for(Limit limit : limits) {
-        double weight = 0;
-        int fixedSize = 0;
-
-        for(int k = limit.startColumn; k <= limit.endColumn; k++) {
-          weight += columns[k].weight;
-          if(columns[k].weight == 0) {
-            fixedSize += columns[k].size;
-          }
-        }
+    private Limit findEarliestMaximum() {
+      for(int i = 0; i < changedLimitCount; i++) {
+        changedStandardWeights[i] = calculateMaximumStandardWeight(limitIndex.getLimit(changedLimitIndices[i]));
+        changedLimits[changedLimitIndices[i]] = false;
+      }
 
-        double standardWeight = (limit.getMaxSize() - fixedSize) / weight;
-        if(VERBOSE) {
-          System.out.println("SW for " + limit + ": " + limit.getMaxSize() + " / " + weight + " = " + standardWeight);
-        }
+      uncheckedLimits.setKeys(changedLimitIndices, changedStandardWeights, changedLimitCount);
+      changedLimitCount = 0;
 
-        if(standardWeight < lowestStandardWeight) {
-          bestLimit = limit;
-          lowestStandardWeight = standardWeight;
-        }
+      if(uncheckedLimits.isEmpty() || !(uncheckedLimits.getKey(uncheckedLimits.peek()) < Double.MAX_VALUE)) {  // TODO Double.POSITIVE_INFINITY ??
+        return null;
       }
 
-      return bestLimit;
+      return limitIndex.getLimit(uncheckedLimits.poll());
     }
 
-    private boolean exceedsMaximumSize(Limit limit) {
-      int size = 0;
+    /*
+     * Marks the unchecked limits containing the given column, as the standard weight at which
+     * they reach their maximum may have changed.
+     */
+    private void columnChanged(int column) {
+      for(int index : limitIndex.getLimitIndices(column)) {
+        if(uncheckedLimits.contains(index) && !changedLimits[index]) {
+          changedLimits[index] = true;
+          changedLimitIndices[changedLimitCount++] = index;
+        }
+      }
+    }
+
+    private double calculateMaximumStandardWeight(Limit limit) {
+      double weight = 0;
+      int fixedSize = 0;
 
       for(int k = limit.startColumn; k <= limit.endColumn; k++) {
-        size += columns[k].size;
+        weight += weights[k];
+        if(weights[k] == 0) {
+          fixedSize += sizes[k];
+        }
       }
 
-      return size > limit.getMaxSize();
+      double standardWeight = (limit.getMaxSize() - fixedSize) / weight;
+      if(VERBOSE) {
+        System.out.println("SW for " + limit + ": " + limit.getMaxSize() + " / " + weight + " = " + standardWeight);
+      }
+
+      return standardWeight;
+    }
+
+    private boolean exceedsMaximumSize(Limit limit) {
+      return sizeSums.sum(limit.startColumn, limit.endColumn) > limit.getMaxSize();
     }
 
     /*
      * Takes a restriction and adjusts the sizes of the columns in encompasses so they match
      * the maximum of this restriction.  Minimums and weights are taken into account during
-     * this adjustment.  It returns an array which contains the space removed from each
-     * column this restriction encompasses.
+     * this adjustment.  The space removed from each column this restriction encompasses is
+     * stored in the lost pixels of the state.
      */
-    private int[] lowerToMatchMaximum(Limit limit) {
+    private void lowerToMatchMaximum(Limit limit) {
       if(VERBOSE) {
-        System.out.println("lowerToMatchMaximum(" + limit + "; sizes = " + Arrays.toString(columns) + ")");
+        System.out.println("lowerToMatchMaximum(" + limit + "; sizes = " + Arrays.toString(sizes) + ")");
       }
       // 1:1   [15, 15]   min [10, 0]   max-total[12] --> [10, 2]
 
-      int[] pixelsLost = new int[limit.endColumn - limit.startColumn + 1];
-
       int spaceLeft = limit.getMaxSize();
       double totalWeight = 0;
 
       for(int k = limit.startColumn; k <= limit.endColumn; k++) {
-        totalWeight += columns[k].weight;
+        totalWeight += weights[k];
       }
 
-      Column[] sorted = Arrays.copyOfRange(columns, limit.startColumn, limit.endColumn + 1);
-      Arrays.sort(sorted, new Comparator<Column>() {
-        @Override
-        public int compare(Column o1, Column o2) {
-          return Double.compare(o2.getStandardWeight(), o1.getStandardWeight());
-        }
-      });
+      int[] sorted = state.sortByDescendingStandardWeight(limit.startColumn, limit.endColumn);
 
       // smallest weight and biggest minimum size first
 
-      for(Column column : sorted) {
-        int desired = (int)(spaceLeft / totalWeight * column.weight);
+      for(int i = 0; i <= limit.endColumn - limit.startColumn; i++) {
+        int column = sorted[i];
+        int desired = (int)(spaceLeft / totalWeight * weights[column]);
 
-        if(desired < column.minimumSize) {
-          desired = column.minimumSize;
+        if(desired < minimumSizes[column]) {
+          desired = minimumSizes[column];
         }
 
         if(VERBOSE) {
-          System.out.println("sizes[" + column.index + "] = " + columns[column.index].size + "; desired = " + desired);
+          System.out.println("sizes[" + column + "] = " + sizes[column] + "; desired = " + desired);
         }
-        assert columns[column.index].size - desired >= 0;
+        assert sizes[column] - desired >= 0;
 
-        pixelsLost[column.index - limit.startColumn] = columns[column.index].size - desired;
-        columns[column.index].size = desired;
+        state.lostPixels[column] = sizes[column] - desired;
+        sizeSums.add(column, desired - sizes[column]);
+        aggregates.addSize(column, desired - sizes[column]);
+        columnChanged(column);
+        sizes[column] = desired;
         spaceLeft -= desired;
-        totalWeight -= column.weight;
+        totalWeight -= weights[column];
 
         if(VERBOSE) {
-          System.out.println("Assigned " + desired + " to column " + column.index + ": weight left = " + totalWeight + "; spaceLeft = " + spaceLeft);
+          System.out.println("Assigned " + desired + " to column " + column + ": weight left = " + totalWeight + "; spaceLeft = " + spaceLeft);
         }
       }
-
-      return pixelsLost;
     }
 
     private void redivideMaximum(Limit limit, int[] leftOverPixels) {
@@ -211,17 +309,15 @@ public class DirectSpaceDistributor implements SpaceDistributor {
       }
 
       for(int columnNumber = limit.startColumn; columnNumber <= limit.endColumn; columnNumber++) {
-        Column columnToFix = columns[columnNumber];
-
-        Group group = findSmallestUnfixedGroup(limit, columnToFix.index);
+        Group group = findSmallestUnfixedGroup(limit, columnNumber);
 
         if(group != null) {
-          distributeOverflow(limit, leftOverPixels[columnToFix.index - limit.startColumn], columnToFix, group);
+          distributeOverflow(limit, leftOverPixels[columnNumber], columnNumber, group);
         }
 
-        columnToFix.weight = 0;
-        columnToFix.weightOffset = 0;
-        columnToFix.minimumSize = columnToFix.size;
+        aggregates.setWeight(columnNumber, 0);
+        weightOffsets[columnNumber] = 0;
+        minimumSizes[columnNumber] = sizes[columnNumber];
       }
     }
 
@@ -234,10 +330,8 @@ public class DirectSpaceDistributor implements SpaceDistributor {
       Group group = rootGroup.getGroup(columnIndex);
 
       do {
-        for(int i = group.start; i <= group.end; i++) {
-          if(!limitToAvoid.contains(i) && columns[i].weight != 0) {
-            return group;
-          }
+        if(aggregates.getUnfixedCount(group.getIndex(), limitToAvoid.startColumn, limitToAvoid.endColumn) > 0) {
+          return group;
         }
 
         group = group.getParent();
@@ -246,42 +340,43 @@ public class DirectSpaceDistributor implements SpaceDistributor {
       return null;
     }
 
-    private void distributeOverflow(Limit restriction, int overflow, Column columnToFix, Group group) {
+    private void distributeOverflow(Limit restriction, int overflow, int columnToFix, Group group) {
       double totalWeight = 0;
       double totalSize = 0;
 
       for(int i = group.start; i <= group.end; i++) {
-        if(!restriction.contains(i) && columns[i].weight != 0) {
-          totalWeight += columns[i].weight;
-          totalSize += columns[i].size + columns[i].weightOffset;
+        if(!restriction.contains(i) && weights[i] != 0) {
+          totalWeight += weights[i];
+          totalSize += sizes[i] + weightOffsets[i];
         }
       }
 
       totalSize += overflow;
 
       if(VERBOSE) {
-        System.out.println("For column " + columnToFix.index + ": leftOverPixels = " + overflow + "; tw = " + totalWeight);
+        System.out.println("For column " + columnToFix + ": leftOverPixels = " + overflow + "; tw = " + totalWeight);
       }
 
-      double weightToAssign = columnToFix.weight;
-      double offsetToAssign = columnToFix.size + columnToFix.weightOffset;
+      double weightToAssign = weights[columnToFix];
+      double offsetToAssign = sizes[columnToFix] + weightOffsets[columnToFix];
       double tw = totalWeight;
 
       for(int i = group.start; i <= group.end; i++) {
-        Column column = columns[i];
-
-        if(!restriction.contains(i) && column.weight != 0) {
-          int x = (int)Math.round(totalSize / tw * column.weight - column.weightOffset) - column.size;
+        if(!restriction.contains(i) && weights[i] != 0) {
+          int x = (int)Math.round(totalSize / tw * weights[i] - weightOffsets[i]) - sizes[i];
 
-          column.size += x;
-          totalSize -= column.size + column.weightOffset;
-          tw -= column.weight;
+          sizes[i] += x;
+          sizeSums.add(i, x);
+          aggregates.addSize(i, x);
+          columnChanged(i);
+          totalSize -= sizes[i] + weightOffsets[i];
+          tw -= weights[i];
 
-          column.weightOffset += offsetToAssign / totalWeight * column.weight;
-          column.weight += weightToAssign / totalWeight * column.weight;
+          weightOffsets[i] += offsetToAssign / totalWeight * weights[i];
+          aggregates.setWeight(i, weights[i] + weightToAssign / totalWeight * weights[i]);
 
           if(VERBOSE) {
-            System.out.println("Changed column " + i + " to " + column.weight + " weight (off=" + column.weightOffset + ") and added " + x + " pixels to become " + column.size + " because column " + columnToFix.index + " reached maximum" );
+            System.out.println("Changed column " + i + " to " + weights[i] + " weight (off=" + weightOffsets[i] + ") and added " + x + " pixels to become " + sizes[i] + " because column " + columnToFix + " reached maximum" );
           }
         }
       }
@@ -325,10 +420,10 @@ public class DirectSpaceDistributor implements SpaceDistributor {
 //        int fixedSize = 0;
 //
 //        for(int k = res.startColumn; k <= res.endColumn; k++) {
-//          weight += columns[k].weight;
-//          size += columns[k].size;
-//          if(columns[k].weight == 0) {
-//            fixedSize += columns[k].size;
+//          weight += weights[k];
+//          size += sizes[k];
+//          if(weights[k] == 0) {
+//            fixedSize += sizes[k];
 //          }
 //        }
 //
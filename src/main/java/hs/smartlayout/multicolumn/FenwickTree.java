@@ -0,0 +1,73 @@
+package hs.smartlayout.multicolumn;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the sizes of a number of columns, such that both changing the size of a column
+ * and determining the total size of a range of columns take O(log n) time.
+ */
+class FenwickTree {
+  private int[] tree;
+
+  public FenwickTree(int[] sizes) {
+    reset(sizes);
+  }
+
+  /**
+   * Replaces the sizes of all columns, reusing the memory of the tree if the number of columns did
+   * not change.
+   *
+   * @param sizes the new sizes of the columns
+   */
+  public void reset(int[] sizes) {
+    if(tree == null || tree.length != sizes.length + 1) {
+      tree = new int[sizes.length + 1];
+    }
+    else {
+      Arrays.fill(tree, 0);
+    }
+
+    for(int i = 0; i < sizes.length; i++) {
+      tree[i + 1] += sizes[i];
+
+      int parent = (i + 1) + ((i + 1) & -(i + 1));
+
+      if(parent < tree.length) {
+        tree[parent] += tree[i + 1];
+      }
+    }
+  }
+
+  /**
+   * Adds the given amount to the size of a column.
+   *
+   * @param column a column
+   * @param delta the amount to add
+   */
+  public void add(int column, int delta) {
+    for(int i = column + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  /**
+   * Returns the total size of the given range of columns.
+   *
+   * @param startColumn the first column, inclusive
+   * @param endColumn the last column, inclusive
+   * @return the total size of the given range of columns
+   */
+  public int sum(int startColumn, int endColumn) {
+    return prefixSum(endColumn + 1) - prefixSum(startColumn);
+  }
+
+  private int prefixSum(int count) {
+    int sum = 0;
+
+    for(int i = count; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+
+    return sum;
+  }
+}
@@ -0,0 +1,177 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+
+/**
+ * Keeps track of the total size, the total weight and the number of unfixed columns (columns with
+ * a weight other than zero) of each group in a group tree, such that changing the size or weight
+ * of a column and querying the totals of a group and all its ancestors take time proportional to
+ * the depth of the tree instead of the number of columns in each group.<p>
+ *
+ * The total weight of a group is the exception: it is summed again in column order when it is
+ * queried after one of its column weights changed, which takes time proportional to the number of
+ * columns in the group (once, no matter how many weights changed).  The pixel loop compares group
+ * standard weights for equality to break ties, so the total must be exactly equal to the total a
+ * simple loop over the columns of the group would calculate; adding each change to the previous
+ * total accumulates rounding errors, which changes how ties are broken and thus the result.
+ */
+class GroupAggregates {
+  private Group rootGroup;
+  private double[] weights;
+  private int[] groupSizes = new int[0];
+  private double[] groupWeights = new double[0];
+  private boolean[] groupWeightsChanged = new boolean[0];
+  private int[] unfixedCounts = new int[0];
+  private int[] unfixed = new int[0];
+  private FenwickTree unfixedSums;
+
+  public GroupAggregates(Group rootGroup, double[] weights, int[] sizes) {
+    reset(rootGroup, weights, sizes);
+  }
+
+  /**
+   * Calculates the totals again for the given columns and group tree, reusing the memory of the
+   * previous totals if the number of columns and groups did not change.
+   *
+   * @param rootGroup the group containing all columns
+   * @param weights the weights of the columns, which is modified by {@link #setWeight(int, double)}
+   * @param sizes the sizes of the columns
+   */
+  public void reset(Group rootGroup, double[] weights, int[] sizes) {
+    int groupCount = rootGroup.getGroupCount();
+
+    this.rootGroup = rootGroup;
+    this.weights = weights;
+
+    if(groupSizes.length != groupCount) {
+      groupSizes = new int[groupCount];
+      groupWeights = new double[groupCount];
+      groupWeightsChanged = new boolean[groupCount];
+      unfixedCounts = new int[groupCount];
+    }
+    if(unfixed.length != weights.length) {
+      unfixed = new int[weights.length];
+    }
+
+    for(int j = 0; j < weights.length; j++) {
+      unfixed[j] = weights[j] != 0 ? 1 : 0;
+    }
+
+    for(int g = 0; g < groupCount; g++) {
+      groupSizes[g] = 0;
+      groupWeights[g] = 0;
+      groupWeightsChanged[g] = false;
+      unfixedCounts[g] = 0;
+
+      for(int k = rootGroup.getStart(g); k <= rootGroup.getEnd(g); k++) {
+        groupSizes[g] += sizes[k];
+        groupWeights[g] += weights[k];
+        unfixedCounts[g] += unfixed[k];
+      }
+    }
+
+    if(unfixedSums == null) {
+      unfixedSums = new FenwickTree(unfixed);
+    }
+    else {
+      unfixedSums.reset(unfixed);
+    }
+  }
+
+  /**
+   * Adds the given amount to the size of a column.
+   *
+   * @param column a column
+   * @param delta the amount to add
+   */
+  public void addSize(int column, int delta) {
+    for(int g = rootGroup.getLeafIndex(column); g != -1; g = rootGroup.getParentIndex(g)) {
+      if(contains(g, column)) {
+        groupSizes[g] += delta;
+      }
+    }
+  }
+
+  /**
+   * Changes the weight of a column.
+   *
+   * @param column a column
+   * @param weight the new weight
+   */
+  public void setWeight(int column, double weight) {
+    int unfixedDelta = (weight != 0 ? 1 : 0) - (weights[column] != 0 ? 1 : 0);
+
+    weights[column] = weight;
+
+    for(int g = rootGroup.getLeafIndex(column); g != -1; g = rootGroup.getParentIndex(g)) {
+      if(contains(g, column)) {
+        groupWeightsChanged[g] = true;
+        unfixedCounts[g] += unfixedDelta;
+      }
+    }
+
+    if(unfixedDelta != 0) {
+      unfixedSums.add(column, unfixedDelta);
+    }
+  }
+
+  public int getSize(int group) {
+    return groupSizes[group];
+  }
+
+  public double getWeight(int group) {
+    if(groupWeightsChanged[group]) {
+      double weight = 0;
+
+      for(int k = rootGroup.getStart(group); k <= rootGroup.getEnd(group); k++) {
+        weight += weights[k];
+      }
+
+      groupWeights[group] = weight;
+      groupWeightsChanged[group] = false;
+    }
+
+    return groupWeights[group];
+  }
+
+  /**
+   * Returns the number of unfixed columns of a group, not counting the columns in the given range.
+   *
+   * @param group the number of a group
+   * @param excludedStart the first column not to count, inclusive
+   * @param excludedEnd the last column not to count, inclusive
+   * @return the number of unfixed columns of a group, not counting the columns in the given range
+   */
+  public int getUnfixedCount(int group, int excludedStart, int excludedEnd) {
+    int start = Math.max(rootGroup.getStart(group), excludedStart);
+    int end = Math.min(rootGroup.getEnd(group), excludedEnd);
+
+    return unfixedCounts[group] - (start <= end ? unfixedSums.sum(start, end) : 0);
+  }
+
+  /**
+   * Returns the highest standard weight of the smallest group containing the given column and
+   * all its ancestors, like {@link LoopingSpaceDistributor#calculateGroupStandardWeight(Group, double[], int[])}.
+   *
+   * @param column a column
+   * @return the highest standard weight of the groups containing the given column
+   */
+  public double calculateGroupStandardWeight(int column) {
+    int group = rootGroup.getLeafIndex(column);
+    double standardWeight = getSize(group) / getWeight(group);
+
+    while(rootGroup.getParentIndex(group) != -1) {
+      group = rootGroup.getParentIndex(group);
+
+      if(getSize(group) / getWeight(group) > standardWeight) {
+        standardWeight = getSize(group) / getWeight(group);
+      }
+    }
+
+    return standardWeight;
+  }
+
+  private boolean contains(int group, int column) {
+    return column >= rootGroup.getStart(group) && column <= rootGroup.getEnd(group);
+  }
+}
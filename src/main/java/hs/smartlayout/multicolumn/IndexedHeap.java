@@ -0,0 +1,198 @@
+package hs.smartlayout.multicolumn;
+
+/**
+ * A priority queue of the numbers 0 to n-1, ordered by a key associated with each number, and by
+ * the number itself for equal keys.  The key of a number can be changed while it is in the queue,
+ * which takes O(log n) time.  Keys which are NaN are ordered as if they were positive infinity.
+ */
+class IndexedHeap {
+  private double[] keys = new double[0];
+  private int[] heap = new int[0];
+  private int[] positions = new int[0];
+
+  private int size;
+
+  /**
+   * Creates a queue containing the numbers 0 to keys.length - 1, with the given keys.
+   *
+   * @param keys the initial keys
+   */
+  public IndexedHeap(double[] keys) {
+    reset(keys, keys.length);
+  }
+
+  /**
+   * Replaces the contents of the queue with the numbers 0 to count - 1, with the given keys.  The
+   * memory of the queue is reused if it is large enough.
+   *
+   * @param keys an array containing the initial keys
+   * @param count the number of keys to use
+   */
+  public void reset(double[] keys, int count) {
+    if(this.keys.length < count) {
+      this.keys = new double[count];
+      this.heap = new int[count];
+      this.positions = new int[count];
+    }
+
+    this.size = count;
+
+    for(int i = 0; i < count; i++) {
+      this.keys[i] = normalize(keys[i]);
+      this.heap[i] = i;
+      this.positions[i] = i;
+    }
+
+    heapify();
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int index) {
+    return positions[index] != -1;
+  }
+
+  public double getKey(int index) {
+    return keys[index];
+  }
+
+  /**
+   * Returns the number with the lowest key without removing it.
+   *
+   * @return the number with the lowest key
+   */
+  public int peek() {
+    return heap[0];
+  }
+
+  /**
+   * Removes the number with the lowest key and returns it.
+   *
+   * @return the number with the lowest key
+   */
+  public int poll() {
+    int index = heap[0];
+
+    remove(index);
+
+    return index;
+  }
+
+  public void remove(int index) {
+    int position = positions[index];
+    int last = heap[--size];
+
+    positions[index] = -1;
+
+    if(last != index) {
+      heap[position] = last;
+      positions[last] = position;
+      siftDown(position);
+      siftUp(positions[last]);
+    }
+  }
+
+  /**
+   * Changes the key of a number in the queue.
+   *
+   * @param index a number in the queue
+   * @param key the new key
+   */
+  public void setKey(int index, double key) {
+    keys[index] = normalize(key);
+
+    siftDown(positions[index]);
+    siftUp(positions[index]);
+  }
+
+  /**
+   * Changes the keys of several numbers in the queue.  When many keys change at once, the queue is
+   * rebuilt in O(n) time instead of repositioning each number separately.
+   *
+   * @param indices an array containing numbers in the queue
+   * @param newKeys an array containing the new keys of these numbers
+   * @param count the number of keys to change
+   */
+  public void setKeys(int[] indices, double[] newKeys, int count) {
+    if(count < size / 16) {
+      for(int i = 0; i < count; i++) {
+        setKey(indices[i], newKeys[i]);
+      }
+    }
+    else {
+      for(int i = 0; i < count; i++) {
+        keys[indices[i]] = normalize(newKeys[i]);
+      }
+
+      heapify();
+    }
+  }
+
+  private void heapify() {
+    for(int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+  }
+
+  private void siftUp(int position) {
+    int index = heap[position];
+
+    while(position > 0) {
+      int parentPosition = (position - 1) / 2;
+      int parent = heap[parentPosition];
+
+      if(!isLess(index, parent)) {
+        break;
+      }
+
+      heap[position] = parent;
+      positions[parent] = position;
+      position = parentPosition;
+    }
+
+    heap[position] = index;
+    positions[index] = position;
+  }
+
+  private void siftDown(int position) {
+    int index = heap[position];
+
+    for(;;) {
+      int childPosition = position * 2 + 1;
+
+      if(childPosition >= size) {
+        break;
+      }
+
+      if(childPosition + 1 < size && isLess(heap[childPosition + 1], heap[childPosition])) {
+        childPosition++;
+      }
+
+      int child = heap[childPosition];
+
+      if(!isLess(child, index)) {
+        break;
+      }
+
+      heap[position] = child;
+      positions[child] = position;
+      position = childPosition;
+    }
+
+    heap[position] = index;
+    positions[index] = position;
+  }
+
+  private boolean isLess(int a, int b) {
+    return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+  }
+
+  /*
+   * Adding 0.0 turns -0.0 into 0.0, as these should compare equal.
+   */
+  private static double normalize(double key) {
+    return Double.isNaN(key) ? Double.POSITIVE_INFINITY : key + 0.0;
+  }
+}
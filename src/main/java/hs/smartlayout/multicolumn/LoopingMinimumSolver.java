@@ -0,0 +1,124 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+import hs.smartlayout.distributor.LimitIndex;
+
+import java.util.List;
+
+public class LoopingMinimumSolver {
+
+  public static int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
+    int spaceUsed = 0;
+
+    for(Limit limit : limits) {
+      if(limit.startColumn == limit.endColumn) {
+        sizes[limit.startColumn] = limit.getMinSize();
+        spaceUsed += limit.getMinSize();
+        weights[limit.startColumn] = limit.getWeight();
+      }
+    }
+
+    LimitIndex limitIndex = new LimitIndex(weights.length, limits);
+    FenwickTree sizeSums = new FenwickTree(sizes);
+    GroupAggregates aggregates = new GroupAggregates(rootGroup, weights, sizes);
+
+    for(;;) {
+      int neediest = -1;
+      int bestMinimumCount = 0;
+      boolean bestMaximumReached = false;
+      double bestGroupWeight = Double.NEGATIVE_INFINITY;
+      double bestColumnWeight = Double.NEGATIVE_INFINITY;
+      double bestWeight = 0;
+      boolean minViolated = false;
+
+      for(int j = 0; j < weights.length; j++) {
+        int minimumCount = 0;
+        boolean maximumReached = false;
+
+        // Only comes in play if a component is below minimum:
+        for(int index : limitIndex.getLimitIndices(j)) {
+          Limit limit = limitIndex.getLimit(index);
+          int currentSize = sizeSums.sum(limit.startColumn, limit.endColumn);
+
+          if(currentSize < limit.getMinSize()) {
+            minimumCount++;
+            minViolated = true;
+          }
+          else if(currentSize >= limit.getMaxSize()) {
+            // 2nd part checks maximum
+            maximumReached = true;
+          }
+        }
+
+        double columnWeight = -sizes[j] / weights[j];  // -10 / 1.0 = -1      -20 / 2.0 = -1
+        double groupWeight = Double.POSITIVE_INFINITY;
+        double standardWeight = -aggregates.calculateGroupStandardWeight(j);
+
+        if(columnWeight < groupWeight) {  // -15 / 2.0 = -7.5       -25 / 2.0 = -12.5
+          groupWeight = columnWeight;
+        }
+        if(standardWeight < groupWeight) {
+          groupWeight = standardWeight;
+        }
+
+        //System.out.println("For " + j + ": " + minimumCount + " : " + groupWeight);
+
+        /*
+         * Standard Weight = size adjusted for weight; when comparing two sizes with each other taking weight into account, the size
+         *                   must first be adjusted to make comparison possible.  This adjustment by dividing by weight transforms
+         *                   the size into a size that can be compared as if both sizes had equal weights.  The naming is unfortunate,
+         *                   better would have been to call it StandardSize. TODO rename to standard size, or weightAdjustedSize
+         *
+         * The neediest column is defined as the one that:
+         * - violates the most minimums as part of a group; the more groups it is part of the more minimums it could possibly violate
+         * - is contained in a group that has reached its maximum; columns not having reached a maximum are preferred
+         * - the lowest group standard weight; note that these are inverted, so the highest value wins TODO swap that around for clarity
+         * - the lowest column standard weight; see note above
+         * - the highest unadjusted weight value
+         */
+
+        int result = Double.compare(bestMinimumCount, minimumCount);
+
+        if(result == 0) {
+          if(bestMaximumReached && !maximumReached) {
+            result = -1;
+          }
+          else if(!bestMaximumReached && maximumReached) {
+            result = 1;
+          }
+          else {
+            result = Double.compare(bestGroupWeight, groupWeight);
+
+            if(result == 0) {
+              result = Double.compare(bestColumnWeight, columnWeight);
+
+              if(result == 0) {
+                result = Double.compare(bestWeight, weights[j]);
+              }
+            }
+          }
+        }
+
+        if(result < 0) {
+          neediest = j;
+          bestMinimumCount = minimumCount;
+          bestMaximumReached = maximumReached;
+          bestGroupWeight = groupWeight;
+          bestColumnWeight = columnWeight;
+          bestWeight = weights[j];
+        }
+      }
+
+      if(!minViolated) {
+        return spaceUsed;
+      }
+
+      //System.out.println(">> add to column " + neediest);
+      sizes[neediest]++;
+      sizeSums.add(neediest, 1);
+      aggregates.addSize(neediest, 1);
+      spaceUsed++;
+    }
+  }
+}
@@ -1,71 +1,118 @@
 package hs.smartlayout.multicolumn;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
-import hs.smartlayout.distributor.SpaceDistributor;
+import hs.smartlayout.distributor.LimitIndex;
+
+/**
+ * Distributes space one pixel at a time, giving each pixel to the column that needs it most.  As
+ * pixels are never taken away, distributing a larger space continues where distributing a smaller
+ * space stopped, which {@link #distributeAll(int[], int, List, Group)} makes use of.<p>
+ *
+ * This class keeps the state it needs between calls, and is therefore not thread safe.
+ */
+public class LoopingSpaceDistributor extends AbstractSpaceDistributor {
+  private final MinimumSolverCache minimumSolverCache = new MinimumSolverCache();
+  private final ColumnState state = new ColumnState();
+  private final LimitIndex limitIndex = new LimitIndex(0, Collections.<Limit>emptyList());
+  private final FenwickTree sizeSums = new FenwickTree(new int[0]);
+
+  private GroupAggregates aggregates;
 
-public class LoopingSpaceDistributor implements SpaceDistributor {
+  @Override
+  public void distributeInto(int space, int columnCount, List<Limit> restrictions, Group rootGroup, int[] sizes) {
+    state.reset(columnCount);
+
+    space -= minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, restrictions);
+
+    limitIndex.reset(columnCount, restrictions);
+
+    prepare(state.sizes, state.weights, rootGroup);
+    fixRest(state.sizes, state.weights, state.weightOffsets, space, rootGroup);
+
+    System.arraycopy(state.sizes, 0, sizes, 0, columnCount);
+  }
 
   @Override
-  public int[] distribute(int space, int columnCount, List<Limit> restrictions, Group rootGroup) {
-    Column[] columns = new Column[columnCount];
-    int[] sizes = new int[columnCount];
+  public int[][] distributeAll(int[] spaces, int columnCount, List<Limit> restrictions, Group rootGroup) {
+    int[][] results = new int[spaces.length][];
+
+    state.reset(columnCount);
+
+    int spaceUsed = minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, restrictions);
 
-    for(int i = 0; i < columnCount; i++) {
-      columns[i] = new Column(i);
-      columns[i].weight = 1.0;
+    limitIndex.reset(columnCount, restrictions);
+
+    prepare(state.sizes, state.weights, rootGroup);
+
+    for(int index : SpaceOrder.ascending(spaces)) {
+      if(spaces[index] > spaceUsed) {
+        spaceUsed = spaces[index] - fixRest(state.sizes, state.weights, state.weightOffsets, spaces[index] - spaceUsed, rootGroup);
+      }
+
+      results[index] = Arrays.copyOf(state.sizes, columnCount);
     }
 
-    space -= MinimumSolver.fixMinimums(sizes, columns, rootGroup, restrictions);
+    return results;
+  }
 
-    fixRest(sizes, columns, space, restrictions, rootGroup);
+  private void prepare(int[] sizes, double[] weights, Group rootGroup) {
+    sizeSums.reset(sizes);
 
-    return sizes;
+    if(aggregates == null) {
+      aggregates = new GroupAggregates(rootGroup, weights, sizes);
+    }
+    else {
+      aggregates.reset(rootGroup, weights, sizes);
+    }
   }
 
-  private void fixRest(int[] sizes, Column[] columns, int space, List<Limit> restrictions, Group rootGroup) {
+  /*
+   * Hands out the given space one pixel at a time, continuing from the current sizes.  Returns the
+   * space which could not be handed out.
+   */
+  private int fixRest(int[] sizes, double[] weights, double[] weightOffsets, int space, Group rootGroup) {
     for(;;) {
-      Score bestScore = calculateBestScore(sizes, columns, restrictions, rootGroup);
+      int bestColumn = findBestColumn(sizes, weights, weightOffsets);
 
-      if(space <= 0 || bestScore.getColumn() == -1) {
+      if(space <= 0 || bestColumn == -1) {
         break;
       }
 
-      if(bestScore.isAlternateMaximumReached() && columns[bestScore.getColumn()].weight != 0) {
-        handleMaximum(rootGroup, columns, bestScore.getColumn(), sizes[bestScore.getColumn()]);
+      // Only comes in play if a component is below minimum:
+      if(weights[bestColumn] != 0 && isMaximumReached(bestColumn)) {
+        handleMaximum(rootGroup, weights, weightOffsets, bestColumn, sizes[bestColumn]);
         continue; // redo calculation for this round
       }
 
-      sizes[bestScore.getColumn()]++;
-      // System.out.println(">> add to column " + bestScore.getColumn() + " : " + Arrays.toString(sizes));
+      sizes[bestColumn]++;
+      sizeSums.add(bestColumn, 1);
+      aggregates.addSize(bestColumn, 1);
+      // System.out.println(">> add to column " + bestColumn + " : " + Arrays.toString(sizes));
       space--;
     }
-  }
-
-  private Score calculateBestScore(int[] sizes, Column[] columns, List<Limit> restrictions, Group rootGroup) {
-    Score bestScore = new Score(-1, 0);
-//    int totalSize = 0;
-//    double totalWeight = 0;
-//
-//    for(int j = 0; j < columns.length; j++) {
-//      totalSize += sizes[j];
-//      totalWeight += columns[j].weight;
-//    }
-
-    for(int j = 0; j < columns.length; j++) {
-      Score score = new Score(j, columns[j].weight);
-
-      // Only comes in play if a component is below minimum:
-      if(isMaximumReached(sizes, restrictions, j)) {
-        score.setAlternateMaximumReached(true);
-      }
 
-//      double constant = totalSize / totalWeight;
-//      double howMuchPixels = constant * columns[j].weight - columns[j].weightOffset;
-//      double howMuchPixelsDiff = howMuchPixels - sizes[j];
+    return space;
+  }
 
-      score.setColumnAndGroupWeight((-sizes[j] - columns[j].weightOffset) / columns[j].weight);  // -10 / 1.0 = -1      -20 / 2.0 = -1
+  /*
+   * Returns the column which should receive the next pixel, or -1 if there are no columns.  This
+   * is the column with the lowest group standard weight, then the lowest column standard weight
+   * and then the highest weight; standard weights are negated, so the highest values win.
+   */
+  private int findBestColumn(int[] sizes, double[] weights, double[] weightOffsets) {
+    int bestColumn = -1;
+    double bestGroupWeight = Double.NEGATIVE_INFINITY;
+    double bestColumnWeight = Double.NEGATIVE_INFINITY;
+    double bestWeight = 0;
+
+    for(int j = 0; j < weights.length; j++) {
+      double columnWeight = (-sizes[j] - weightOffsets[j]) / weights[j];  // -10 / 1.0 = -1      -20 / 2.0 = -1
+      double groupWeight = columnWeight;
 
       /*
        * Column weight was calculated, which is used if group weight matches to determine the best column within a group.
@@ -74,59 +121,64 @@ public class LoopingSpaceDistributor implements SpaceDistributor {
        * better weight, they overrule the smallest group.
        */
 
-      // System.out.println("column = " + j + "; SW = " + (-calculateGroupStandardWeight(rootGroup.getGroup(j), columns, sizes)) + ", CW = " + ((-sizes[j] - columns[j].weightOffset) / columns[j].weight) + ", w = " + columns[j].weight + ", missing pixels = " +howMuchPixelsDiff + " g: " + calculateGroupMissingPixels(rootGroup.getGroup(j), columns, sizes, constant));
+      double standardWeight = -aggregates.calculateGroupStandardWeight(j);
+
+      if(standardWeight < groupWeight) {
+        groupWeight = standardWeight;
+      }
+
+      int result = Double.compare(bestGroupWeight, groupWeight);
 
-      score.decreaseGroupWeight(-calculateGroupStandardWeight(rootGroup.getGroup(j), columns, sizes));
+      if(result == 0) {
+        result = Double.compare(bestColumnWeight, columnWeight);
+
+        if(result == 0) {
+          result = Double.compare(bestWeight, weights[j]);
+        }
+      }
 
-      if(bestScore.compareTo(score) < 0) {
-        bestScore = score;
+      if(result < 0) {
+        bestColumn = j;
+        bestGroupWeight = groupWeight;
+        bestColumnWeight = columnWeight;
+        bestWeight = weights[j];
       }
     }
 
-    return bestScore;
+    return bestColumn;
   }
 
-  private boolean isMaximumReached(int[] sizes, List<Limit> restrictions, int column) {
-    for(Limit res : restrictions) {
-      if(res.contains(column)) {
-        int currentSize = 0;
-
-        for(int k = res.startColumn; k <= res.endColumn; k++) {
-          currentSize += sizes[k];
-        }
+  private boolean isMaximumReached(int column) {
+    for(int index : limitIndex.getLimitIndices(column)) {
+      Limit res = limitIndex.getLimit(index);
 
-        if(currentSize >= res.getMaxSize()) {
-          return true;
-        }
+      if(sizeSums.sum(res.startColumn, res.endColumn) >= res.getMaxSize()) {
+        return true;
       }
     }
 
     return false;
   }
 
-  private void handleMaximum(Group rootGroup, Column[] columns, int column, int columnSize) {
+  private void handleMaximum(Group rootGroup, double[] weights, double[] weightOffsets, int column, int columnSize) {
     // at this point, we need to rebalance weights and do this part again, or somehow assign
     // the pixel that might have been assigned to this column to another column in the same
     // group (which may also reach its maximum, etc...)
 
-    double weightToAssign = columns[column].weight;
-    double offsetToAssign = columnSize + columns[column].weightOffset;
-    columns[column].weight = 0;
-    columns[column].weightOffset = 0;
+    double weightToAssign = weights[column];
+    double offsetToAssign = columnSize + weightOffsets[column];
+    aggregates.setWeight(column, 0);
+    weightOffsets[column] = 0;
 
     Group group = rootGroup.getGroup(column);
     // System.out.println("Enter for " + column);
     while(group != null) {
-      double totalWeight = 0;
-
-      for(int i = group.start; i <= group.end; i++) {
-        totalWeight += columns[i].weight;
-      }
+      double totalWeight = aggregates.getWeight(group.getIndex());
 
       if(totalWeight != 0) {
         for(int i = group.start; i <= group.end; i++) {
-          columns[i].weightOffset += offsetToAssign / totalWeight * columns[i].weight;
-          columns[i].weight += weightToAssign / totalWeight * columns[i].weight;
+          weightOffsets[i] += offsetToAssign / totalWeight * weights[i];
+          aggregates.setWeight(i, weights[i] + weightToAssign / totalWeight * weights[i]);
           // System.out.println("Assigned " + weights[i] + " (off=" + weightOffsets[i] + ") to " + i + " because " + column + " reached maximum");
         }
 
@@ -137,13 +189,13 @@ public class LoopingSpaceDistributor implements SpaceDistributor {
     }
   }
 
-//  private static double calculateGroupMissingPixels(Group group, Column[] columns, int[] sizes, double constant) {
+//  private static double calculateGroupMissingPixels(Group group, double[] weights, int[] sizes, double constant) {
 //    int groupSize = 0;
 //    double groupWeight = 0;
 //
 //    for(int k = group.start; k <= group.end; k++) {
 //      groupSize += sizes[k];
-//      groupWeight += columns[k].weight;
+//      groupWeight += weights[k];
 //    }
 //
 //    double howMuchPixels = constant * groupWeight;
@@ -152,13 +204,13 @@ public class LoopingSpaceDistributor implements SpaceDistributor {
 //    return howMuchPixelsDiff;
 //  }
 
-  public static double calculateGroupStandardWeight(Group group, Column[] columns, int[] sizes) {
+  public static double calculateGroupStandardWeight(Group group, double[] weights, int[] sizes) {
     int groupSize = 0;
     double groupWeight = 0;
 
     for(int k = group.start; k <= group.end; k++) {
       groupSize += sizes[k];
-      groupWeight += columns[k].weight;
+      groupWeight += weights[k];
     }
 
     double standardWeight = groupSize / groupWeight;
@@ -171,7 +223,7 @@ public class LoopingSpaceDistributor implements SpaceDistributor {
 
       for(int k = group.start; k <= group.end; k++) {
         groupSize += sizes[k];
-        groupWeight += columns[k].weight;
+        groupWeight += weights[k];
       }
 
       if(groupSize / groupWeight > standardWeight) {  // apparently should be ">" as otherwise parent groups cannot influence ratio
@@ -181,55 +233,4 @@ public class LoopingSpaceDistributor implements SpaceDistributor {
 
     return standardWeight;
   }
-
-  private static class Score implements Comparable<Score> {
-    private double groupWeight = Double.NEGATIVE_INFINITY;
-    private double columnWeight = Double.NEGATIVE_INFINITY;
-    private boolean alternateMaximumReached;
-    private final double weight;
-    private final int column;
-
-    public Score(int column, double weight) {
-      this.column = column;
-      this.weight = weight;
-    }
-
-    public int getColumn() {
-      return column;
-    }
-
-    public void setColumnAndGroupWeight(double weight) {
-      this.columnWeight = weight;
-      this.groupWeight = weight;
-    }
-
-    public void decreaseGroupWeight(double score) {
-      if(score < groupWeight) {
-        groupWeight = score;
-      }
-    }
-
-    @Override
-    public int compareTo(Score o) {
-      int result = Double.compare(groupWeight, o.groupWeight);
-
-      if(result == 0) {
-        result = Double.compare(columnWeight, o.columnWeight);
-
-        if(result == 0) {
-          result = Double.compare(weight, o.weight);
-        }
-      }
-
-      return result;
-    }
-
-    public boolean isAlternateMaximumReached() {
-      return alternateMaximumReached;
-    }
-
-    public void setAlternateMaximumReached(boolean b) {
-      this.alternateMaximumReached = b;
-    }
-  }
 }
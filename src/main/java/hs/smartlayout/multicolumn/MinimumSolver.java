@@ -5,147 +5,277 @@ import hs.smartlayout.distributor.Limit;
 
 import java.util.List;
 
+/**
+ * Assigns the minimum sizes required by the limits, with the same results as
+ * {@link LoopingMinimumSolver}.<p>
+ *
+ * The pixel loop always gives the next pixel to the neediest column: the column violating the
+ * most minimums, then one not contained in a limit that reached its maximum, then the one with the
+ * lowest group standard size, lowest column standard size and highest weight.  The first two
+ * criteria only change when a limit reaches its minimum or maximum, and in between the remaining
+ * criteria hand out space like water filling.  This solver therefore calculates the sizes at the
+ * level just before the next limit reaches its minimum or maximum directly, and only uses the
+ * pixel loop for the last few pixels around each such event.  When none of the columns violating
+ * the most minimums has a weight, the pixel loop gives every pixel to the first of them until the
+ * next event, so that space is assigned in one step as well.
+ */
 public class MinimumSolver {
 
-  public static int fixMinimums(int[] sizes, Column[] columns, Group rootGroup, List<Limit> limits) {
+  public static int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
     int spaceUsed = 0;
 
     for(Limit limit : limits) {
       if(limit.startColumn == limit.endColumn) {
         sizes[limit.startColumn] = limit.getMinSize();
         spaceUsed += limit.getMinSize();
-        columns[limit.startColumn].weight = limit.getWeight();
+        weights[limit.startColumn] = limit.getWeight();
       }
     }
 
-    for(;;) {
-      Score bestScore = new Score(0);
-      int neediest = -1;
-      boolean minViolated = false;
+    if(weights.length == 0 || !isMinimumViolated(sizes, limits)) {
+      return spaceUsed;
+    }
 
-      for(int j = 0; j < columns.length; j++) {
-        Score score = new Score(columns[j].weight);
+    return spaceUsed + new Solver(sizes, weights, limits, rootGroup).fixRest();
+  }
 
-        score.improveGroupWeight(Double.POSITIVE_INFINITY);
+  private static boolean isMinimumViolated(int[] sizes, List<Limit> limits) {
+    for(Limit limit : limits) {
+      int currentSize = 0;
 
-        // Only comes in play if a component is below minimum:
-        for(Limit limit : limits) {
-          if(limit.contains(j)) {
-            int currentSize = 0;
+      for(int k = limit.startColumn; k <= limit.endColumn; k++) {
+        currentSize += sizes[k];
+      }
 
-            for(int k = limit.startColumn; k <= limit.endColumn; k++) {
-              currentSize += sizes[k];
-            }
+      if(currentSize < limit.getMinSize()) {
+        return true;
+      }
+    }
 
-            if(currentSize < limit.getMinSize()) {
-              score.addToMinimum(1);
-              minViolated = true;
-            }
-            else if(currentSize >= limit.getMaxSize()) {
-              // 2nd part checks maximum
-              score.setMaximumReached(true);
-            }
-          }
-        }
+    return false;
+  }
 
-        score.setColumnWeight(-sizes[j] / columns[j].weight);  // -10 / 1.0 = -1      -20 / 2.0 = -1
-        score.decreaseGroupWeight(-sizes[j] / columns[j].weight);  // -15 / 2.0 = -7.5       -25 / 2.0 = -12.5
+  static class Solver extends WaterFillingSolver {
+    private final int[] minimumCounts;
+    private final boolean[] maximumsReached;
+    private int mostMinimums;
+    private boolean allMaximumsReached;
 
-        //System.out.println("For " + j + ": " + score.minimum + " : " + score.groupWeight);
+    public Solver(int[] sizes, double[] weights, List<Limit> limits, Group rootGroup) {
+      super(sizes, weights, new double[weights.length], limits, rootGroup);
 
-        score.decreaseGroupWeight(-LoopingSpaceDistributor.calculateGroupStandardWeight(rootGroup.getGroup(j), columns, sizes));
+      this.minimumCounts = new int[weights.length];
+      this.maximumsReached = new boolean[weights.length];
+    }
 
-        if(bestScore.compareTo(score) < 0) {
-          bestScore = score;
-          neediest = j;
+    public int fixRest() {
+      int spaceUsed = 0;
+
+      for(;;) {
+        if(exactSteps <= 0) {
+          int unweightedColumn = findUnweightedColumn();
+
+          spaceUsed += unweightedColumn == -1 ? jump(calculateMissingSpace()) : growUntilNextEvent(unweightedColumn);
         }
+
+        int neediest = findNeediestColumn();
+
+        if(neediest == -1) {
+          return spaceUsed;
+        }
+
+        addSize(neediest, 1);
+        spaceUsed++;
+        exactSteps--;
       }
+    }
 
-      if(!minViolated) {
-        return spaceUsed;
+    /*
+     * Every pixel assigned reduces the space missing for at least one minimum, so this is the
+     * most space that could still be needed.
+     */
+    private int calculateMissingSpace() {
+      long missingSpace = 0;
+
+      for(int l = 0; l < limitSize.length; l++) {
+        if(limitSize[l] < limitMin[l]) {
+          missingSpace += limitMin[l] - limitSize[l];
+        }
       }
 
-      //System.out.println(">> add to column " + neediest);
-      sizes[neediest]++;
-      spaceUsed++;
+      return (int)Math.min(missingSpace, Integer.MAX_VALUE);
     }
-  }
 
-  private static class Score implements Comparable<Score> {
-    private double minimum = 0;
-    private double groupWeight = Double.NEGATIVE_INFINITY;
-    private double columnWeight = Double.NEGATIVE_INFINITY;
-    private boolean maximumReached;
-    private final double weight;
+    /*
+     * Returns the first selectable column if none of the selectable columns has a weight, or -1
+     * otherwise.  Such columns all score negative infinity, so the pixel loop keeps selecting the
+     * first of them until a limit containing it reaches its minimum or maximum.  Columns without
+     * size score NaN instead and are left to the pixel loop, which always selects those first.
+     */
+    private int findUnweightedColumn() {
+      int unweightedColumn = -1;
+
+      updateSelection();
 
-    public Score(double weight) {
-      this.weight = weight;
+      for(int j = 0; j < weights.length; j++) {
+        if(isSelectable(j)) {
+          if(weights[j] != 0 || sizes[j] == 0) {
+            return -1;
+          }
+
+          if(unweightedColumn == -1) {
+            unweightedColumn = j;
+          }
+        }
+      }
+
+      return unweightedColumn;
     }
 
-    public void setColumnWeight(double columnWeight) {
-      this.columnWeight = columnWeight;
+    /*
+     * Assigns space to the given column until the next limit containing it reaches its minimum or
+     * maximum, and returns the space assigned.
+     */
+    private int growUntilNextEvent(int column) {
+      int space = Integer.MAX_VALUE;
+
+      for(int l : limitIndex.getLimitIndices(column)) {
+        if(limitSize[l] < limitMin[l]) {
+          space = Math.min(space, limitMin[l] - limitSize[l]);
+        }
+        else if(limitSize[l] < limitMax[l]) {
+          space = Math.min(space, limitMax[l] - limitSize[l]);
+        }
+      }
+
+      addSize(column, space);
+      exactSteps = 1;
+
+      return space;
     }
 
-    public void addToMinimum(double value) {
-      minimum += value;
+    /*
+     * Only the columns which violate the most minimums, preferring those which did not reach a
+     * maximum, can grow until the next limit reaches its minimum or maximum.
+     */
+    @Override
+    protected boolean selectColumns() {
+      updateSelection();
+
+      for(int j = 0; j < weights.length; j++) {
+        boolean selectable = isSelectable(j);
+
+        if(selectable && Double.isNaN(-sizes[j] / weights[j])) {
+          return false;
+        }
+
+        pending[j] = false;
+        growing[j] = selectable && weights[j] != 0;
+      }
+
+      return true;
     }
 
-    public void improveGroupWeight(double score) {
-      if(score > groupWeight) {
-        groupWeight = score;
+    private void updateSelection() {
+      mostMinimums = 0;
+      allMaximumsReached = true;
+
+      for(int j = 0; j < weights.length; j++) {
+        updateCounts(j);
+
+        if(minimumCounts[j] > mostMinimums) {
+          mostMinimums = minimumCounts[j];
+          allMaximumsReached = maximumsReached[j];
+        }
+        else if(minimumCounts[j] == mostMinimums) {
+          allMaximumsReached &= maximumsReached[j];
+        }
       }
     }
 
-    public void decreaseGroupWeight(double score) {
-      if(score < groupWeight) {
-        groupWeight = score;
+    private boolean isSelectable(int column) {
+      return mostMinimums > 0 && minimumCounts[column] == mostMinimums && maximumsReached[column] == allMaximumsReached;
+    }
+
+    private void updateCounts(int column) {
+      minimumCounts[column] = 0;
+      maximumsReached[column] = false;
+
+      for(int l : limitIndex.getLimitIndices(column)) {
+        if(limitSize[l] < limitMin[l]) {
+          minimumCounts[column]++;
+        }
+        else if(limitSize[l] >= limitMax[l]) {
+          maximumsReached[column] = true;
+        }
       }
     }
 
-    @Override
-    public int compareTo(Score o) {
+    /*
+     * The pixel loop of LoopingMinimumSolver, selecting the column that should receive the next
+     * pixel, or -1 if no minimum is violated.  The scores are compared in the same order with the
+     * same floating point operations so ties are broken the same way.
+     */
+    int findNeediestColumn() {
+      int neediest = -1;
+      int bestMinimumCount = 0;
+      boolean bestMaximumReached = false;
+      double bestGroupWeight = Double.NEGATIVE_INFINITY;
+      double bestColumnWeight = Double.NEGATIVE_INFINITY;
+      double bestWeight = 0;
+      boolean minViolated = false;
+
+      for(int j = 0; j < weights.length; j++) {
+        updateCounts(j);
 
-      /*
-       * Standard Weight = size adjusted for weight; when comparing two sizes with each other taking weight into account, the size
-       *                   must first be adjusted to make comparison possible.  This adjustment by dividing by weight transforms
-       *                   the size into a size that can be compared as if both sizes had equal weights.  The naming is unfortunate,
-       *                   better would have been to call it StandardSize. TODO rename to standard size, or weightAdjustedSize
-       *
-       * The neediest column is defined as the one that:
-       * - violates the most minimums as part of a group; the more groups it is part of the more minimums it could possibly violate
-       * - is contained in a group that has reached its maximum; columns not having reached a maximum are preferred
-       * - the lowest group standard weight; note that these are inverted, so the highest value wins TODO swap that around for clarity
-       * - the lowest column standard weight; see note above
-       * - the highest unadjusted weight value
-       */
+        if(minimumCounts[j] > 0) {
+          minViolated = true;
+        }
 
-      int result = Double.compare(minimum, o.minimum);
+        double columnWeight = -sizes[j] / weights[j];
+        double groupWeight = Double.POSITIVE_INFINITY;
+        double standardWeight = -calculateGroupStandardWeight(j);
 
-      if(result == 0) {
-        if(maximumReached && !o.maximumReached) {
-          result = -1;
+        if(columnWeight < groupWeight) {
+          groupWeight = columnWeight;
         }
-        else if(!maximumReached && o.maximumReached) {
-          result = 1;
+        if(standardWeight < groupWeight) {
+          groupWeight = standardWeight;
         }
-        else {
-          result = Double.compare(groupWeight, o.groupWeight);
 
-          if(result == 0) {
-            result = Double.compare(columnWeight, o.columnWeight);
+        int result = Double.compare(bestMinimumCount, minimumCounts[j]);
+
+        if(result == 0) {
+          if(bestMaximumReached && !maximumsReached[j]) {
+            result = -1;
+          }
+          else if(!bestMaximumReached && maximumsReached[j]) {
+            result = 1;
+          }
+          else {
+            result = Double.compare(bestGroupWeight, groupWeight);
 
             if(result == 0) {
-              result = Double.compare(weight, o.weight);
+              result = Double.compare(bestColumnWeight, columnWeight);
+
+              if(result == 0) {
+                result = Double.compare(bestWeight, weights[j]);
+              }
             }
           }
         }
-      }
 
-      return result;
-    }
+        if(result < 0) {
+          neediest = j;
+          bestMinimumCount = minimumCounts[j];
+          bestMaximumReached = maximumsReached[j];
+          bestGroupWeight = groupWeight;
+          bestColumnWeight = columnWeight;
+          bestWeight = weights[j];
+        }
+      }
 
-    public void setMaximumReached(boolean maximumReached) {
-      this.maximumReached = maximumReached;
+      return minViolated ? neediest : -1;
     }
   }
 }
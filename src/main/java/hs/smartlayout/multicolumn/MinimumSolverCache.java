@@ -0,0 +1,147 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+
+import java.util.List;
+
+/**
+ * Remembers the result of the last {@link MinimumSolver#fixMinimums(int[], double[], Group, List)}
+ * call.  The minimums only depend on the limits, the group structure and the starting sizes and
+ * weights of the columns, but not on the space available, so when only the available space
+ * changes (like when a window is being resized) the minimums do not need to be solved again.<p>
+ *
+ * The result is looked up by a fingerprint of all the values the solver uses, which is
+ * recalculated on every call; changing a {@link Limit} with {@link Limit#min(int)},
+ * {@link Limit#max(int)} or {@link Limit#weight(double)} therefore results in a different
+ * fingerprint and the minimums being solved again.  The fingerprints are kept in reusable
+ * buffers, so a call which finds its result in the cache does not allocate memory.<p>
+ *
+ * This class is not thread safe.
+ */
+public class MinimumSolverCache {
+  private long[] fingerprint = new long[0];
+  private long[] newFingerprint = new long[0];
+  private int fingerprintLength = -1;
+  private int[] sizes;
+  private double[] weights;
+  private int spaceUsed;
+  private int solveCount;
+
+  /**
+   * Fixes the minimums in the same way as {@link MinimumSolver#fixMinimums(int[], double[], Group, List)},
+   * returning a copy of the previous result if nothing changed since the previous call.
+   */
+  public int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
+    int length = createFingerprint(sizes, weights, rootGroup, limits);
+
+    if(!isFingerprintUnchanged(length)) {
+      int[] solvedSizes = sizes.clone();
+      double[] solvedWeights = weights.clone();
+      long[] oldFingerprint = this.fingerprint;
+
+      this.spaceUsed = MinimumSolver.fixMinimums(solvedSizes, solvedWeights, rootGroup, limits);
+      this.sizes = solvedSizes;
+      this.weights = solvedWeights;
+      this.fingerprint = newFingerprint;
+      this.fingerprintLength = length;
+      this.newFingerprint = oldFingerprint;
+      this.solveCount++;
+    }
+
+    System.arraycopy(this.sizes, 0, sizes, 0, sizes.length);
+    System.arraycopy(this.weights, 0, weights, 0, weights.length);
+
+    return spaceUsed;
+  }
+
+  /**
+   * Returns the number of times the minimums had to be solved, as opposed to being returned from
+   * the cache.
+   */
+  int getSolveCount() {
+    return solveCount;
+  }
+
+  private boolean isFingerprintUnchanged(int length) {
+    if(length != fingerprintLength) {
+      return false;
+    }
+
+    for(int i = 0; i < length; i++) {
+      if(newFingerprint[i] != fingerprint[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /*
+   * Stores the fingerprint of the given values in newFingerprint, and returns its length.
+   */
+  private int createFingerprint(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
+    int groupValues = 0;
+
+    for(int j = 0; j < weights.length; j++) {
+      Group group = rootGroup.getGroup(j);
+
+      if(group.start == j) {
+        groupValues++;
+
+        for(; group != null; group = group.getParent()) {
+          groupValues += 2;
+        }
+      }
+    }
+
+    int length = 1 + weights.length * 2 + limits.size() * 5 + groupValues;
+
+    if(newFingerprint.length < length) {
+      newFingerprint = new long[length];
+    }
+
+    long[] fingerprint = newFingerprint;
+    int index = 0;
+
+    fingerprint[index++] = weights.length;
+
+    for(int j = 0; j < weights.length; j++) {
+      fingerprint[index++] = sizes[j];
+      fingerprint[index++] = Double.doubleToLongBits(weights[j]);
+    }
+
+    for(int i = 0; i < limits.size(); i++) {
+      Limit limit = limits.get(i);
+
+      fingerprint[index++] = limit.startColumn;
+      fingerprint[index++] = limit.endColumn;
+      fingerprint[index++] = limit.getMinSize();
+      fingerprint[index++] = limit.getMaxSize();
+      fingerprint[index++] = Double.doubleToLongBits(limit.getWeight());
+    }
+
+    /*
+     * The group structure is captured by the ranges of all groups containing the first column of
+     * each leaf group, each chain of ranges preceded by its length.
+     */
+
+    for(int j = 0; j < weights.length; j++) {
+      Group group = rootGroup.getGroup(j);
+
+      if(group.start == j) {
+        int depthIndex = index++;
+
+        fingerprint[depthIndex] = 0;
+
+        for(; group != null; group = group.getParent()) {
+          fingerprint[index++] = group.start;
+          fingerprint[index++] = group.end;
+          fingerprint[depthIndex]++;
+        }
+      }
+    }
+
+    return length;
+  }
+}
@@ -0,0 +1,34 @@
+package hs.smartlayout.multicolumn;
+
+import java.util.Arrays;
+
+/**
+ * Orders the spaces of a batch distribution, so distributors which hand out space one pixel after
+ * another can continue from the distribution of the previous space instead of starting again.
+ */
+class SpaceOrder {
+
+  /**
+   * Returns the indices of the given spaces ordered by ascending space, keeping equal spaces in
+   * the order they were given.
+   *
+   * @param spaces the spaces
+   * @return the indices of the given spaces ordered by ascending space
+   */
+  static int[] ascending(int[] spaces) {
+    long[] keys = new long[spaces.length];
+    int[] order = new int[spaces.length];
+
+    for(int i = 0; i < spaces.length; i++) {
+      keys[i] = (long)spaces[i] << 32 | i;
+    }
+
+    Arrays.sort(keys);
+
+    for(int i = 0; i < spaces.length; i++) {
+      order[i] = (int)keys[i];
+    }
+
+    return order;
+  }
+}
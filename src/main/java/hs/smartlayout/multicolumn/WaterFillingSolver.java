@@ -0,0 +1,662 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+import hs.smartlayout.distributor.LimitIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class for solvers which hand out space in the same way as a pixel loop that gives each
+ * pixel to the column with the lowest standard size, while respecting the standard size of the
+ * groups containing the column (like {@link LoopingSpaceDistributor} does).<p>
+ *
+ * As long as the set of columns that can receive space does not change (a phase) such a pixel
+ * loop behaves like water filling: all growing columns end up at the same standard size (the
+ * level), unless one of their groups already has a higher standard size than the level, in which
+ * case that group only receives enough space to keep up with the level.  This class calculates the
+ * sizes for a given level directly and searches for the level at which the next event occurs (a
+ * limit reaching its minimum or maximum, or a pending column being selected), so subclasses only
+ * need to run their pixel loop for the last few pixels around each event.
+ */
+abstract class WaterFillingSolver {
+  private static final int BISECTION_STEPS = 64;
+
+  /*
+   * Levels are only searched until they are precise to a fraction of a pixel; the total size never
+   * grows faster than the level times the weight of the root group.
+   */
+
+  private static final double SIZE_PRECISION = 0.01;
+  private static final double ROUNDING_MARGIN = 1e-9;
+
+  protected final int[] sizes;
+  protected final double[] weights;
+  protected final double[] weightOffsets;
+
+  /*
+   * The total size and weight of each group; column weights must be changed through it.
+   */
+
+  protected final GroupAggregates aggregates;
+
+  /*
+   * The group tree, flattened.  Node 0 is the root group; children are always stored after
+   * their parents.
+   */
+
+  protected final int[] nodeStart;
+  protected final int[] nodeEnd;
+  protected final int[] nodeParent;
+  protected final int[] columnLeaf;
+  private final int[][] nodeChildren;
+  private final int[] leafNodes;
+  private final boolean coversAllColumns;
+
+  /*
+   * The limits which have a minimum or a maximum, and the current size of each of them.
+   */
+
+  protected final int[] limitMin;
+  protected final int[] limitMax;
+  protected final int[] limitSize;
+  protected final LimitIndex limitIndex;
+  private final int[] limitStart;
+  private final int[] limitEnd;
+
+  /*
+   * Per-phase state, filled in by subclasses: the columns which grow with the level, and the
+   * columns which grow as well but only after an event (when the level reaches their standard size).
+   */
+
+  protected final boolean[] growing;
+  protected final boolean[] pending;
+
+  private final boolean[] belowMin;
+  private final boolean[] belowMax;
+  private final double[][] leafActivation;
+  private final double[][] leafWeightSum;
+  private final double[][] leafOffsetSum;
+  private final long[][] leafSizeSum;
+  private final int[] leafCounts;
+  private final double[] leafLevel;
+  private final double[] continuousSizes;
+  private final double[] prefixSizes;
+
+  /*
+   * Scratch space for ordering the growing columns of a leaf by activation level.
+   */
+
+  private final int[] order;
+  private final int[] orderBuffer;
+  private final double[] activationLevels;
+
+  /**
+   * The number of pixels the pixel loop should assign before calling {@link #jump(int)} again.
+   */
+  protected int exactSteps;
+
+  WaterFillingSolver(int[] sizes, double[] weights, double[] weightOffsets, List<Limit> limits, Group rootGroup) {
+    this.sizes = sizes;
+    this.weights = weights;
+    this.weightOffsets = weightOffsets;
+
+    int columnCount = weights.length;
+
+    /*
+     * Use the flattened group tree, keeping only the groups containing at least one column.  As
+     * groups are numbered depth first, children are found in column order by visiting the groups
+     * in order of their number.
+     */
+
+    int nodeCount = rootGroup.getGroupCount();
+    boolean[] visited = new boolean[nodeCount];
+    int[] leaves = new int[columnCount];
+    int leafCount = 0;
+
+    columnLeaf = new int[columnCount];
+    nodeStart = new int[nodeCount];
+    nodeEnd = new int[nodeCount];
+    nodeParent = new int[nodeCount];
+    nodeChildren = new int[nodeCount][];
+
+    int[] childCounts = new int[nodeCount];
+
+    for(int j = 0; j < columnCount; j++) {
+      int leaf = rootGroup.getLeafIndex(j);
+
+      columnLeaf[j] = leaf;
+
+      if(!visited[leaf]) {
+        leaves[leafCount++] = leaf;
+      }
+
+      for(int n = leaf; n != -1 && !visited[n]; n = rootGroup.getParentIndex(n)) {
+        visited[n] = true;
+
+        if(rootGroup.getParentIndex(n) != -1) {
+          childCounts[rootGroup.getParentIndex(n)]++;
+        }
+      }
+    }
+
+    for(int n = 0; n < nodeCount; n++) {
+      nodeStart[n] = rootGroup.getStart(n);
+      nodeEnd[n] = rootGroup.getEnd(n);
+      nodeParent[n] = rootGroup.getParentIndex(n);
+      nodeChildren[n] = new int[childCounts[n]];
+      childCounts[n] = 0;
+
+      if(visited[n] && nodeParent[n] != -1) {
+        nodeChildren[nodeParent[n]][childCounts[nodeParent[n]]++] = n;
+      }
+    }
+
+    /*
+     * The pixel loop tolerates group trees which do not cover all columns by ignoring the columns
+     * outside of the root group when calculating group sizes; these are left to the pixel loop.
+     */
+
+    coversAllColumns = rootGroup.start == 0 && rootGroup.end == columnCount - 1;
+    leafNodes = Arrays.copyOf(leaves, leafCount);
+    aggregates = new GroupAggregates(rootGroup, weights, sizes);
+
+    /*
+     * Index the limits; limits without a minimum and without a maximum never influence the result.
+     */
+
+    List<Limit> activeLimits = new ArrayList<Limit>();
+
+    for(Limit limit : limits) {
+      if(limit.getMinSize() > 0 || limit.getMaxSize() != Integer.MAX_VALUE) {
+        activeLimits.add(limit);
+      }
+    }
+
+    int limitCount = activeLimits.size();
+    long[] sizeSums = new long[columnCount + 1];
+
+    for(int j = 0; j < columnCount; j++) {
+      sizeSums[j + 1] = sizeSums[j] + sizes[j];
+    }
+
+    limitIndex = new LimitIndex(columnCount, activeLimits);
+    limitStart = new int[limitCount];
+    limitEnd = new int[limitCount];
+    limitMin = new int[limitCount];
+    limitMax = new int[limitCount];
+    limitSize = new int[limitCount];
+
+    for(int l = 0; l < limitCount; l++) {
+      Limit limit = activeLimits.get(l);
+
+      limitStart[l] = limit.startColumn;
+      limitEnd[l] = limit.endColumn;
+      limitMin[l] = limit.getMinSize();
+      limitMax[l] = limit.getMaxSize();
+      limitSize[l] = (int)(sizeSums[limit.endColumn + 1] - sizeSums[limit.startColumn]);
+    }
+
+    growing = new boolean[columnCount];
+    pending = new boolean[columnCount];
+    belowMin = new boolean[limitCount];
+    belowMax = new boolean[limitCount];
+    leafActivation = new double[nodeCount][];
+    leafWeightSum = new double[nodeCount][];
+    leafOffsetSum = new double[nodeCount][];
+    leafSizeSum = new long[nodeCount][];
+    leafCounts = new int[nodeCount];
+    leafLevel = new double[nodeCount];
+    continuousSizes = new double[columnCount];
+    prefixSizes = new double[columnCount + 1];
+    order = new int[columnCount];
+    orderBuffer = new int[columnCount];
+    activationLevels = new double[columnCount];
+
+    for(int leaf : leafNodes) {
+      int leafSize = nodeEnd[leaf] - nodeStart[leaf] + 1;
+
+      leafActivation[leaf] = new double[leafSize];
+      leafWeightSum[leaf] = new double[leafSize + 1];
+      leafOffsetSum[leaf] = new double[leafSize + 1];
+      leafSizeSum[leaf] = new long[leafSize + 1];
+    }
+  }
+
+  /**
+   * Fills in which columns are growing and which are pending for the next phase.  Returns false
+   * when the pixel loop must handle the next step itself, for example because a column which
+   * could be selected has neither weight nor size (the pixel loop always selects those first).
+   */
+  protected abstract boolean selectColumns();
+
+  /**
+   * Calculates the standard size of the group of the given column, which is the highest standard
+   * size of the groups containing the column; see
+   * {@link GroupAggregates#calculateGroupStandardWeight(int)}.
+   */
+  protected double calculateGroupStandardWeight(int column) {
+    return aggregates.calculateGroupStandardWeight(column);
+  }
+
+  /**
+   * Returns whether the group tree covers all columns; if not, {@link #jump(int)} never assigns
+   * any space.
+   */
+  protected boolean coversAllColumns() {
+    return coversAllColumns;
+  }
+
+  protected boolean isMaximumReached(int column) {
+    for(int l : limitIndex.getLimitIndices(column)) {
+      if(limitSize[l] >= limitMax[l]) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  protected void addSize(int column, int size) {
+    sizes[column] += size;
+    aggregates.addSize(column, size);
+
+    for(int l : limitIndex.getLimitIndices(column)) {
+      limitSize[l] += size;
+    }
+  }
+
+  /**
+   * Assigns as much of the given space as possible in one step, stopping just before the next
+   * event, and returns the space assigned.  The continuous solution is rounded down, so the
+   * remaining pixels (at least one per column) are left to the pixel loop, as is the event itself.
+   */
+  protected int jump(int space) {
+    if(!coversAllColumns) {
+      exactSteps = Integer.MAX_VALUE;
+      return 0;
+    }
+
+    if(space <= weights.length) {
+      exactSteps = weights.length + 1;
+      return 0;
+    }
+
+    exactSteps = 1;
+
+    if(!preparePhase()) {
+      return 0;
+    }
+
+    double targetSize = aggregates.getSize(0) + (double)space;
+    double spaceLevel = findSpaceLevel(targetSize);
+
+    if(Double.isInfinite(spaceLevel) || hasEvent(spaceLevel)) {
+      double low = 0;
+      double high = Double.isInfinite(spaceLevel) ? findEventLevel() : spaceLevel;
+
+      if(Double.isInfinite(high)) {
+        return 0;
+      }
+
+      for(int i = 0; i < BISECTION_STEPS && low < high; i++) {
+        double middle = low + (high - low) / 2;
+
+        if(middle <= low || middle >= high || (high - low) * aggregates.getWeight(0) < SIZE_PRECISION) {
+          break;
+        }
+
+        if(hasEvent(middle)) {
+          high = middle;
+        }
+        else {
+          low = middle;
+        }
+      }
+
+      targetSize = Math.min(targetSize, total(low));
+    }
+
+    /*
+     * The continuous solution is rounded down, which could result in a state the pixel loop would
+     * never reach as it depends on the order in which pixels were assigned to columns of equal
+     * score.  Stopping one pixel per column short of the next event leaves the last pixels to the
+     * pixel loop, which then settles such ties exactly as it would have otherwise.
+     */
+
+    targetSize -= weights.length;
+
+    if(targetSize <= aggregates.getSize(0)) {
+      exactSteps = weights.length + 1;
+      return 0;
+    }
+
+    double level = findSpaceLevel(targetSize);
+    double total = calculateSizes(level);
+    int assigned = 0;
+
+    for(int j = 0; j < weights.length; j++) {
+      int size = (int)Math.floor(continuousSizes[j] + ROUNDING_MARGIN);
+
+      if(size > sizes[j]) {
+        assigned += size - sizes[j];
+        addSize(j, size - sizes[j]);
+      }
+    }
+
+    exactSteps = (int)Math.min((long)space - assigned, (long)Math.ceil(total - aggregates.getSize(0)) + weights.length) + 1;
+
+    return assigned;
+  }
+
+  /*
+   * Lets the subclass determine which columns can grow and prepares the breakpoints of each leaf
+   * group.  Returns false if no column can grow.
+   */
+  private boolean preparePhase() {
+    if(!selectColumns()) {
+      return false;
+    }
+
+    boolean anyGrowing = false;
+
+    for(int j = 0; j < weights.length; j++) {
+      anyGrowing |= growing[j];
+    }
+
+    if(!anyGrowing) {
+      return false;
+    }
+
+    for(int l = 0; l < limitSize.length; l++) {
+      belowMin[l] = limitSize[l] < limitMin[l];
+      belowMax[l] = limitSize[l] < limitMax[l];
+    }
+
+    for(int leaf : leafNodes) {
+      int count = 0;
+
+      for(int k = nodeStart[leaf]; k <= nodeEnd[leaf]; k++) {
+        if(growing[k]) {
+          activationLevels[k] = activationLevel(k);
+          order[count++] = k;
+        }
+      }
+
+      int[] sorted = sortByActivationLevel(count);
+
+      leafCounts[leaf] = count;
+
+      for(int i = 0; i < count; i++) {
+        int k = sorted[i];
+
+        leafActivation[leaf][i] = activationLevels[k];
+        leafWeightSum[leaf][i + 1] = leafWeightSum[leaf][i] + weights[k];
+        leafOffsetSum[leaf][i + 1] = leafOffsetSum[leaf][i] + weightOffsets[k];
+        leafSizeSum[leaf][i + 1] = leafSizeSum[leaf][i] + sizes[k];
+      }
+    }
+
+    return true;
+  }
+
+  /*
+   * Sorts the first count columns in order by activation level, keeping columns with equal
+   * activation levels in column order (a bottom-up merge sort, so no memory is allocated).
+   * Returns the array containing the sorted columns, which is either order or orderBuffer.
+   */
+  private int[] sortByActivationLevel(int count) {
+    int[] source = order;
+    int[] target = orderBuffer;
+
+    for(int width = 1; width < count; width *= 2) {
+      for(int start = 0; start < count; start += width * 2) {
+        int middle = Math.min(start + width, count);
+        int end = Math.min(start + width * 2, count);
+        int left = start;
+        int right = middle;
+
+        for(int i = start; i < end; i++) {
+          if(left < middle && (right >= end || Double.compare(activationLevels[source[left]], activationLevels[source[right]]) <= 0)) {
+            target[i] = source[left++];
+          }
+          else {
+            target[i] = source[right++];
+          }
+        }
+      }
+
+      int[] swap = source;
+
+      source = target;
+      target = swap;
+    }
+
+    return source;
+  }
+
+  /*
+   * The standard size at which a column starts receiving space.
+   */
+  private double activationLevel(int column) {
+    return (sizes[column] + weightOffsets[column]) / weights[column];
+  }
+
+  /*
+   * Finds the level at which the given total size is reached, or positive infinity if it can
+   * not be reached in the current phase.
+   */
+  private double findSpaceLevel(double target) {
+    double low = 0;
+    double high = 1;
+
+    while(total(high) < target) {
+      low = high;
+      high *= 2;
+
+      if(Double.isInfinite(high)) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+
+    for(int i = 0; i < BISECTION_STEPS; i++) {
+      double middle = low + (high - low) / 2;
+
+      if(middle <= low || middle >= high || (high - low) * aggregates.getWeight(0) < SIZE_PRECISION) {
+        break;
+      }
+
+      if(total(middle) < target) {
+        low = middle;
+      }
+      else {
+        high = middle;
+      }
+    }
+
+    return high;
+  }
+
+  /*
+   * Finds a level at which an event occurs when the available space is unbounded, or positive
+   * infinity when no event will occur in the current phase.
+   */
+  private double findEventLevel() {
+    double level = 1;
+
+    while(!hasEvent(level)) {
+      level *= 2;
+
+      if(Double.isInfinite(level)) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+
+    return level;
+  }
+
+  /*
+   * Returns true if, at the given level, a limit reached its minimum or maximum, or a pending
+   * column would be selected to receive space.
+   */
+  private boolean hasEvent(double level) {
+    calculateSizes(level);
+
+    for(int j = 0; j < weights.length; j++) {
+      prefixSizes[j + 1] = prefixSizes[j] + continuousSizes[j];
+
+      if(pending[j] && leafLevel[columnLeaf[j]] > activationLevel(j)) {
+        return true;
+      }
+    }
+
+    for(int l = 0; l < limitSize.length; l++) {
+      double size = prefixSizes[limitEnd[l] + 1] - prefixSizes[limitStart[l]];
+
+      if((belowMin[l] && size >= limitMin[l]) || (belowMax[l] && size >= limitMax[l])) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private double total(double level) {
+    return cappedDemand(0, level, level);
+  }
+
+  /*
+   * Calculates the size of each column at the given level into continuousSizes, and returns
+   * the total size.
+   */
+  private double calculateSizes(double level) {
+    double total = total(level);
+
+    assign(0, total, level, level);
+
+    return total;
+  }
+
+  /*
+   * The size a group takes at the given level: a group whose standard size would exceed the
+   * level only grows as fast as the level itself, and it never shrinks below its current size.
+   */
+  private double cappedDemand(int node, double innerLevel, double level) {
+    return Math.max(aggregates.getSize(node), Math.min(level * aggregates.getWeight(node), demand(node, innerLevel, level)));
+  }
+
+  private double demand(int node, double innerLevel, double level) {
+    if(nodeChildren[node].length == 0) {
+      return leafDemand(node, innerLevel);
+    }
+
+    double demand = 0;
+
+    for(int child : nodeChildren[node]) {
+      demand += cappedDemand(child, innerLevel, level);
+    }
+
+    return demand;
+  }
+
+  private double leafDemand(int leaf, double innerLevel) {
+    double[] activation = leafActivation[leaf];
+    int low = 0;
+    int high = leafCounts[leaf];
+
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+
+      if(activation[middle] < innerLevel) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+
+    return innerLevel * leafWeightSum[leaf][low] - leafOffsetSum[leaf][low] + (aggregates.getSize(leaf) - leafSizeSum[leaf][low]);
+  }
+
+  /*
+   * Distributes the given size over the group at the highest inner level (not exceeding the
+   * level of its parent) that fits the size.  Groups that are held back by a high standard size
+   * end up with a lower inner level, so their smallest columns receive space first.
+   */
+  private void assign(int node, double size, double parentLevel, double level) {
+    double innerLevel = parentLevel;
+
+    if(demand(node, parentLevel, level) > size) {
+      innerLevel = nodeChildren[node].length == 0 ? leafLevelFor(node, size) : innerLevelFor(node, size, parentLevel, level);
+
+      if(innerLevel > parentLevel) {
+        innerLevel = parentLevel;
+      }
+    }
+
+    if(nodeChildren[node].length == 0) {
+      leafLevel[node] = innerLevel;
+
+      for(int k = nodeStart[node]; k <= nodeEnd[node]; k++) {
+        continuousSizes[k] = growing[k] ? Math.max(sizes[k], innerLevel * weights[k] - weightOffsets[k]) : sizes[k];
+      }
+    }
+    else {
+      for(int child : nodeChildren[node]) {
+        assign(child, cappedDemand(child, innerLevel, level), innerLevel, level);
+      }
+    }
+  }
+
+  private double leafLevelFor(int leaf, double size) {
+    double[] activation = leafActivation[leaf];
+    int low = 1;
+    int high = leafCounts[leaf];
+
+    if(high == 0) {
+      return 0;
+    }
+
+    /*
+     * Find the largest number of active columns for which the size at the activation level of
+     * the last of them does not exceed the given size.
+     */
+
+    while(low < high) {
+      int middle = (low + high + 1) >>> 1;
+
+      if(leafDemand(leaf, activation[middle - 1]) <= size) {
+        low = middle;
+      }
+      else {
+        high = middle - 1;
+      }
+    }
+
+    return (size - aggregates.getSize(leaf) + leafSizeSum[leaf][low] + leafOffsetSum[leaf][low]) / leafWeightSum[leaf][low];
+  }
+
+  private double innerLevelFor(int node, double size, double parentLevel, double level) {
+    double low = 0;
+    double high = parentLevel;
+
+    for(int i = 0; i < BISECTION_STEPS; i++) {
+      double middle = low + (high - low) / 2;
+
+      if(middle <= low || middle >= high || (high - low) * aggregates.getWeight(0) < SIZE_PRECISION) {
+        break;
+      }
+
+      if(demand(node, middle, level) > size) {
+        high = middle;
+      }
+      else {
+        low = middle;
+      }
+    }
+
+    return low;
+  }
+}
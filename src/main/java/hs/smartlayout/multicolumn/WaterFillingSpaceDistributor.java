@@ -0,0 +1,355 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distributes space in the same way as {@link LoopingSpaceDistributor}, but without handing out
+ * space one pixel at a time.<p>
+ *
+ * Between two events (a limit reaching its maximum, or a column that reached a maximum being
+ * selected so its weight is handed to its group) the pixel loop behaves like water filling: the
+ * column with the lowest standard size receives the next pixel, unless one of its groups already
+ * has a higher standard size than the current level, in which case that group only receives
+ * enough space to keep up with the level.  This distributor calculates that process directly for
+ * a given level, locates the next event by searching the level and only falls back to the pixel
+ * loop for the last pixels before each event (one per column), where rounding decides which
+ * column gets the pixel.  The pixel loop keeps the columns of each leaf group in a heap ordered by
+ * score, so selecting a column costs a logarithmic number of comparisons per leaf group instead of
+ * scoring every column.  Its cost therefore depends on the number of columns, groups and limits,
+ * but not on the amount of space.<p>
+ *
+ * As the pixel loop never takes space away, distributing a larger space continues where
+ * distributing a smaller space stopped; {@link #distributeAll(int[], int, List, Group)} makes use
+ * of this by distributing the spaces in ascending order with a single solver.<p>
+ *
+ * This class keeps the state it needs between calls, and is therefore not thread safe.
+ */
+public class WaterFillingSpaceDistributor extends AbstractSpaceDistributor {
+  private final MinimumSolverCache minimumSolverCache = new MinimumSolverCache();
+  private final ColumnState state = new ColumnState();
+
+  @Override
+  public void distributeInto(int space, int columnCount, List<Limit> limits, Group rootGroup, int[] sizes) {
+    state.reset(columnCount);
+
+    space -= minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, limits);
+
+    if(columnCount > 0) {
+      Solver solver = createSolver(state.sizes, state.weights, state.weightOffsets, limits, rootGroup);
+
+      solver.fixRest(space);
+    }
+
+    System.arraycopy(state.sizes, 0, sizes, 0, columnCount);
+  }
+
+  @Override
+  public int[][] distributeAll(int[] spaces, int columnCount, List<Limit> limits, Group rootGroup) {
+    int[][] results = new int[spaces.length][];
+
+    state.reset(columnCount);
+
+    int spaceUsed = minimumSolverCache.fixMinimums(state.sizes, state.weights, rootGroup, limits);
+    Solver solver = columnCount > 0 ? createSolver(state.sizes, state.weights, state.weightOffsets, limits, rootGroup) : null;
+
+    for(int index : SpaceOrder.ascending(spaces)) {
+      if(solver != null && spaces[index] > spaceUsed) {
+        spaceUsed = spaces[index] - solver.fixRest(spaces[index] - spaceUsed);
+      }
+
+      results[index] = Arrays.copyOf(state.sizes, columnCount);
+    }
+
+    return results;
+  }
+
+  /*
+   * Creates the solver for the given columns.  The solver is package private, so tests can count
+   * how many columns it scores.
+   */
+  Solver createSolver(int[] sizes, double[] weights, double[] weightOffsets, List<Limit> limits, Group rootGroup) {
+    return new Solver(sizes, weights, weightOffsets, limits, rootGroup);
+  }
+
+  static class Solver extends WaterFillingSolver {
+
+    /*
+     * The columns of each leaf group form a heap (leaf k uses the range heapStart[k] until
+     * heapStart[k + 1]) with the best scoring column of the leaf at the top.  All columns of a leaf
+     * share the same groups, so the best column of a leaf is found by comparing only the column
+     * scores.  The heaps are rebuilt after the sizes or weights of many columns changed.
+     */
+
+    private final int[] heap;
+    private final int[] heapStart;
+    private final int[] heapPosition;
+    private final int[] columnHeap;
+    private boolean heapsValid;
+
+    public Solver(int[] sizes, double[] weights, double[] weightOffsets, List<Limit> limits, Group rootGroup) {
+      super(sizes, weights, weightOffsets, limits, rootGroup);
+
+      int columnCount = weights.length;
+      int[] heapOfLeaf = new int[nodeStart.length];
+      int heapCount = 0;
+
+      Arrays.fill(heapOfLeaf, -1);
+
+      heap = new int[columnCount];
+      heapPosition = new int[columnCount];
+      columnHeap = new int[columnCount];
+
+      for(int j = 0; j < columnCount; j++) {
+        if(heapOfLeaf[columnLeaf[j]] == -1) {
+          heapOfLeaf[columnLeaf[j]] = heapCount++;
+        }
+
+        columnHeap[j] = heapOfLeaf[columnLeaf[j]];
+      }
+
+      heapStart = new int[heapCount + 1];
+
+      for(int j = 0; j < columnCount; j++) {
+        heapStart[columnHeap[j] + 1]++;
+      }
+
+      for(int k = 0; k < heapCount; k++) {
+        heapStart[k + 1] += heapStart[k];
+      }
+    }
+
+    /*
+     * Hands out the given space, continuing from the current sizes.  Returns the space which could
+     * not be handed out.
+     */
+    public int fixRest(int space) {
+      for(;;) {
+        if(exactSteps <= 0 && space > 0) {
+          space -= jump(space);
+          heapsValid = false;
+        }
+
+        int best = findBestColumn();
+
+        if(space <= 0 || best == -1) {
+          break;
+        }
+
+        if(isMaximumReached(best) && weights[best] != 0) {
+          handleMaximum(best);
+          continue; // redo calculation for this round
+        }
+
+        addSize(best, 1);
+        space--;
+        exactSteps--;
+
+        if(heapsValid) {
+          siftDown(columnHeap[best], heapPosition[best]);
+        }
+      }
+
+      return space;
+    }
+
+    /*
+     * Columns which reached a maximum keep growing until the pixel loop selects them, at which
+     * point their weight is handed to their group.
+     */
+    @Override
+    protected boolean selectColumns() {
+      for(int j = 0; j < weights.length; j++) {
+        if(Double.isNaN((-sizes[j] - weightOffsets[j]) / weights[j])) {
+          return false;
+        }
+
+        pending[j] = weights[j] != 0 && isMaximumReached(j);
+        growing[j] = weights[j] != 0 && !pending[j];
+      }
+
+      return true;
+    }
+
+    /*
+     * The pixel loop of LoopingSpaceDistributor, selecting the column that should receive the next
+     * pixel.  The scores are compared in the same order with the same floating point operations
+     * so ties are broken the same way.  Within a leaf the group score only caps the column score,
+     * so the best column of the leaf (the top of its heap) is the only candidate of that leaf.  The
+     * leaves are visited in column order, so of two candidates with equal scores the first one
+     * found wins, like in the pixel loop.
+     * When the group tree does not cover all columns, all columns are scored.
+     */
+    private int findBestColumn() {
+      if(!coversAllColumns()) {
+        return scoreAllColumns();
+      }
+
+      if(!heapsValid) {
+        buildHeaps();
+      }
+
+      int bestColumn = -1;
+      double bestGroupWeight = Double.NEGATIVE_INFINITY;
+      double bestColumnWeight = Double.NEGATIVE_INFINITY;
+      double bestWeight = 0;
+
+      for(int k = 0; k < heapStart.length - 1; k++) {
+        int j = heap[heapStart[k]];
+        double columnWeight = (-sizes[j] - weightOffsets[j]) / weights[j];
+        double groupWeight = columnWeight;
+        double standardWeight = calculateGroupStandardWeight(j);
+
+        if(-standardWeight < groupWeight) {
+          groupWeight = -standardWeight;
+        }
+
+        int result = Double.compare(bestGroupWeight, groupWeight);
+
+        if(result == 0) {
+          result = Double.compare(bestColumnWeight, columnWeight);
+
+          if(result == 0) {
+            result = Double.compare(bestWeight, weights[j]);
+          }
+        }
+
+        if(result < 0) {
+          bestColumn = j;
+          bestGroupWeight = groupWeight;
+          bestColumnWeight = columnWeight;
+          bestWeight = weights[j];
+        }
+      }
+
+      return bestColumn;
+    }
+
+    private int scoreAllColumns() {
+      int bestColumn = -1;
+      double bestGroupWeight = Double.NEGATIVE_INFINITY;
+      double bestColumnWeight = Double.NEGATIVE_INFINITY;
+      double bestWeight = 0;
+
+      for(int j = 0; j < weights.length; j++) {
+        double columnWeight = (-sizes[j] - weightOffsets[j]) / weights[j];
+        double groupWeight = columnWeight;
+        double standardWeight = calculateGroupStandardWeight(j);
+
+        if(-standardWeight < groupWeight) {
+          groupWeight = -standardWeight;
+        }
+
+        int result = Double.compare(bestGroupWeight, groupWeight);
+
+        if(result == 0) {
+          result = Double.compare(bestColumnWeight, columnWeight);
+
+          if(result == 0) {
+            result = Double.compare(bestWeight, weights[j]);
+          }
+        }
+
+        if(result < 0) {
+          bestColumn = j;
+          bestGroupWeight = groupWeight;
+          bestColumnWeight = columnWeight;
+          bestWeight = weights[j];
+        }
+      }
+
+      return bestColumn;
+    }
+
+    private void handleMaximum(int column) {
+      double weightToAssign = weights[column];
+      double offsetToAssign = sizes[column] + weightOffsets[column];
+      aggregates.setWeight(column, 0);
+      weightOffsets[column] = 0;
+
+      for(int node = columnLeaf[column]; node != -1; node = nodeParent[node]) {
+        double totalWeight = aggregates.getWeight(node);
+
+        if(totalWeight != 0) {
+          for(int i = nodeStart[node]; i <= nodeEnd[node]; i++) {
+            weightOffsets[i] += offsetToAssign / totalWeight * weights[i];
+            aggregates.setWeight(i, weights[i] + weightToAssign / totalWeight * weights[i]);
+          }
+
+          break;
+        }
+      }
+
+      heapsValid = false;
+    }
+
+    private void buildHeaps() {
+      int[] positions = Arrays.copyOf(heapStart, heapStart.length - 1);
+
+      for(int j = 0; j < weights.length; j++) {
+        int position = positions[columnHeap[j]]++;
+
+        heap[position] = j;
+        heapPosition[j] = position;
+      }
+
+      for(int k = 0; k < heapStart.length - 1; k++) {
+        for(int i = heapStart[k] + (heapStart[k + 1] - heapStart[k]) / 2 - 1; i >= heapStart[k]; i--) {
+          siftDown(k, i);
+        }
+      }
+
+      heapsValid = true;
+    }
+
+    /*
+     * Moves the column at the given position of heap k down until both its children score worse.
+     */
+    private void siftDown(int k, int position) {
+      int start = heapStart[k];
+      int end = heapStart[k + 1];
+      int column = heap[position];
+
+      for(;;) {
+        int child = start + 2 * (position - start) + 1;
+
+        if(child >= end) {
+          break;
+        }
+
+        if(child + 1 < end && scoresBetter(heap[child + 1], heap[child])) {
+          child++;
+        }
+
+        if(!scoresBetter(heap[child], column)) {
+          break;
+        }
+
+        heap[position] = heap[child];
+        heapPosition[heap[position]] = position;
+        position = child;
+      }
+
+      heap[position] = column;
+      heapPosition[column] = position;
+    }
+
+    /*
+     * Compares the scores of two columns of the same leaf like the pixel loop does; of two columns
+     * with equal scores the first one scores better.
+     */
+    private boolean scoresBetter(int a, int b) {
+      int result = Double.compare((-sizes[a] - weightOffsets[a]) / weights[a], (-sizes[b] - weightOffsets[b]) / weights[b]);
+
+      if(result == 0) {
+        result = Double.compare(weights[a], weights[b]);
+      }
+
+      return result > 0 || (result == 0 && a < b);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package hs.smartlayout;
+
+import java.awt.Dimension;
+
+import org.junit.Test;
+
+public class BlockTest {
+
+  @Test
+  public void shouldMeasureWhenSizesAreFirstRequested() {
+    JFakeLabel label = new JFakeLabel();
+
+    label.setPreferredSize(new Dimension(30, 20));
+    label.setMaximumSize(new Dimension(300, 200));
+
+    Block block = new Block(label, new Constraints().setWeightX(2.0), 0, 0);
+
+    Assert.assertEquals(30, block.getMinWidth());
+    Assert.assertEquals(20, block.getMinHeight());
+    Assert.assertEquals(300, block.getMaxWidth());
+    Assert.assertEquals(200, block.getMaxHeight());
+    Assert.assertEquals(2.0, block.getWeightX(), 0.0);
+  }
+
+  @Test
+  public void shouldKeepSizesUntilMeasuredAgain() {
+    JFakeLabel label = new JFakeLabel();
+
+    label.setPreferredSize(new Dimension(30, 20));
+
+    Block block = new Block(label, new Constraints(), 0, 0);
+
+    Assert.assertEquals(30, block.getMinWidth());
+
+    label.setPreferredSize(new Dimension(40, 20));
+
+    Assert.assertEquals(30, block.getMinWidth());
+    Assert.assertTrue(block.measure());
+    Assert.assertEquals(40, block.getMinWidth());
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void shouldReturnLimitsAsLayoutUsesThem() {
+    JFakeLabel label = new JFakeLabel();
+
+    label.setPreferredSize(new Dimension(0, 20));
+    label.setMaximumSize(new Dimension(300, 10));
+
+    Block block = new Block(label, new Constraints().setWeightY(2.0), 0, 0);
+    LineLimit limitsX = block.getLimitsX();
+    LineLimit limitsY = block.getLimitsY();
+
+    Assert.assertEquals(1, limitsX.minimum);
+    Assert.assertEquals(300, limitsX.maximum);
+    Assert.assertEquals(20, limitsY.minimum);
+    Assert.assertEquals(20, limitsY.maximum);
+    Assert.assertEquals(2.0, limitsY.weight, 0.0);
+  }
+}
@@ -0,0 +1,126 @@
+package hs.smartlayout;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class LayoutEngineTest {
+  private final LayoutEngine engine = new LayoutEngine();
+
+  @Test
+  public void shouldCalculateSizesIncludingSpacingAndInsets() {
+    engine.setGridSize(2, 1);
+    engine.setSpacing(5, 7);
+    engine.setInsets(1, 2, 3, 4);
+
+    engine.setCellSizes(engine.addCell(0, 0, 1, 1), 10, 20, Integer.MAX_VALUE, Integer.MAX_VALUE, 1.0, 1.0);
+    engine.setCellSizes(engine.addCell(1, 0, 1, 1), 30, 15, 30, 15, 1.0, 1.0);
+
+    Assert.assertEquals(10 + 5 + 30 + 2 + 4, engine.getMinimumWidth());
+    Assert.assertEquals(20 + 1 + 3, engine.getMinimumHeight());
+    Assert.assertEquals(Integer.MAX_VALUE, engine.getMaximumWidth());
+  }
+
+  @Test
+  public void shouldReturnEmptySizesWithoutCells() {
+    engine.setGridSize(3, 3);
+    engine.setInsets(1, 2, 3, 4);
+
+    Assert.assertEquals(0, engine.getMinimumWidth());
+    Assert.assertEquals(0, engine.getMinimumHeight());
+    Assert.assertEquals(Integer.MAX_VALUE, engine.getMaximumWidth());
+    Assert.assertEquals(Integer.MAX_VALUE, engine.getMaximumHeight());
+  }
+
+  @Test
+  public void shouldLayOutCells() {
+    engine.setGridSize(2, 1);
+    engine.setSpacing(5, 5);
+    engine.setInsets(1, 2, 3, 4);
+
+    int first = engine.addCell(0, 0, 1, 1);
+    int second = engine.addCell(1, 0, 1, 1);
+
+    engine.setCellSizes(first, 10, 20, Integer.MAX_VALUE, Integer.MAX_VALUE, 1.0, 1.0);
+    engine.setCellSizes(second, 30, 10, 30, 10, 1.0, 1.0);
+    engine.setCellAnchor(second, Anchor.SOUTH);
+
+    int[] bounds = new int[8];
+
+    engine.layout(71, 30, bounds);
+
+    Assert.assertEquals("[2, 1, 30, 26, 37, 17, 30, 10]", Arrays.toString(bounds));
+  }
+
+  @Test
+  public void shouldRaiseMinimumsToOneAndMaximumsToMinimums() {
+    engine.setGridSize(1, 1);
+    engine.setCellSizes(engine.addCell(0, 0, 1, 1), 0, 50, 0, 10, 0.0, 0.0);
+
+    Assert.assertEquals(1, engine.getMinimumWidth());
+    Assert.assertEquals(1, engine.getMaximumWidth());
+    Assert.assertEquals(50, engine.getMinimumHeight());
+    Assert.assertEquals(50, engine.getMaximumHeight());
+  }
+
+  @Test
+  public void shouldGiveLargeSpanningMinimumToFirstLineWhenLinesHaveNoWeight() {
+    engine.setGridSize(3, 2);
+    engine.setSpacing(0, 0);
+
+    for(int x = 0; x < 3; x++) {
+      engine.setCellSizes(engine.addCell(x, 0, 1, 1), 10, 10, Integer.MAX_VALUE, Integer.MAX_VALUE, 0.0, 0.0);
+    }
+
+    engine.setCellSizes(engine.addCell(0, 1, 3, 1), 100000, 10, Integer.MAX_VALUE, Integer.MAX_VALUE, 0.0, 0.0);
+
+    int[] bounds = new int[16];
+
+    engine.layout(100000, 20, bounds);
+
+    Assert.assertEquals(100000, engine.getMinimumWidth());
+    Assert.assertEquals("[0, 0, 99980, 10, 99980, 0, 10, 10, 99990, 0, 10, 10, 0, 10, 100000, 10]", Arrays.toString(bounds));
+  }
+
+  @Test
+  public void shouldOnlyCalculateLimitsAgainWhenCellsChange() {
+    engine.setGridSize(2, 1);
+
+    int cell = engine.addCell(0, 0, 1, 1);
+
+    engine.setCellSizes(cell, 10, 10, 100, 100, 1.0, 1.0);
+    engine.setCellSizes(engine.addCell(1, 0, 1, 1), 10, 10, 100, 100, 1.0, 1.0);
+    engine.getMinimumWidth();
+    engine.setCellSizes(cell, 10, 10, 100, 100, 1.0, 1.0);
+    engine.layout(100, 100, new int[8]);
+
+    Assert.assertEquals(1, engine.getLimitCalculationCount());
+
+    engine.setCellSizes(cell, 20, 10, 100, 100, 1.0, 1.0);
+
+    Assert.assertEquals(30, engine.getMinimumWidth());
+    Assert.assertEquals(2, engine.getLimitCalculationCount());
+  }
+
+  @Test
+  public void shouldIgnoreRemovedCells() {
+    engine.setGridSize(1, 2);
+    engine.setSpacing(0, 0);
+    engine.setCellSizes(engine.addCell(0, 0, 1, 1), 10, 10, 100, 100, 1.0, 1.0);
+
+    int removed = engine.addCell(0, 1, 1, 1);
+
+    engine.setCellSizes(removed, 500, 10, 500, 100, 1.0, 1.0);
+
+    Assert.assertEquals(500, engine.getMinimumWidth());
+
+    engine.removeCells(removed);
+    engine.setGridSize(1, 1);
+
+    Assert.assertEquals(1, engine.getCellCount());
+    Assert.assertEquals(10, engine.getMinimumWidth());
+    Assert.assertEquals(10, engine.getMinimumHeight());
+  }
+}
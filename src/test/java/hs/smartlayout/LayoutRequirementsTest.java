@@ -1,5 +1,8 @@
 package hs.smartlayout;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
@@ -138,4 +141,71 @@ public class LayoutRequirementsTest {
     Assert.assertEquals(25, solution[0]);
     Assert.assertEquals(75, solution[1]);
   }
+
+  @Test
+  public void shouldMeetMaximumsOnlyWhenAllMaximumsFit() {
+    LayoutRequirements[] children = new LayoutRequirements[1000];
+
+    for(int i = 0; i < children.length; i++) {
+      children[i] = new LayoutRequirements(0, 10, i % 2 == 0 ? 1.0 : 0.1);
+    }
+
+    int[] solution = LayoutRequirements.calculateTiledPositions(10000, children);
+
+    for(int i = 0; i < children.length; i++) {
+      Assert.assertEquals(10, solution[i]);
+    }
+
+    solution = LayoutRequirements.calculateTiledPositions(9999, children);
+
+    int total = 0;
+
+    for(int i = 0; i < children.length; i++) {
+      Assert.assertTrue(solution[i] <= 10);
+      total += solution[i];
+    }
+
+    Assert.assertEquals(9999, total);
+  }
+
+  @Test
+  public void shouldCalculateSameSpansAsSummingForEachComponent() {
+    Random random = new Random(1);
+    double[] fractions = new double[] {0.1, 0.2, 0.3, 0.6, 0.7, 1.1, 1.0 / 3, 2.0 / 3};
+
+    for(int p = 0; p < 200; p++) {
+      int count = 1 + random.nextInt(p % 50 == 0 ? 200 : 30);
+      int level = 1 + random.nextInt(30);
+      int[] minimums = new int[count];
+      int[] maximums = new int[count];
+      double[] weights = new double[count];
+
+      /*
+       * Weights like 0.1 and 1/3 are summed with rounding errors, which decide whether a maximum
+       * is reached when the maximums are close to the sizes at the same standardised weight.
+       */
+
+      for(int i = 0; i < count; i++) {
+        int kind = random.nextInt(10);
+
+        minimums[i] = random.nextInt(4) == 0 ? random.nextInt(5) : 0;
+        weights[i] = kind < 8 ? fractions[random.nextInt(fractions.length)] * (1 + random.nextInt(3)) : kind < 9 ? random.nextDouble() * 3 : 0;
+        maximums[i] = random.nextInt(3) == 0 ? (int)Math.round(weights[i] * level) + random.nextInt(3) - 1
+                    : random.nextInt(10) == 0 ? Integer.MAX_VALUE : minimums[i] + 1 + random.nextInt(300);
+      }
+
+      if(random.nextInt(50) == 0) {
+        weights[random.nextInt(count)] = random.nextBoolean() ? -1.0 : Double.NaN;
+      }
+
+      for(int allocated = 0; allocated < 400; allocated++) {
+        int[] expected = SummingLayoutRequirements.calculateTiledPositions(allocated, minimums, maximums, weights);
+        int[] spans = new int[count];
+
+        LayoutRequirements.calculateTiledPositions(allocated, count, minimums.clone(), maximums.clone(), weights.clone(), new int[count], new int[count], spans);
+
+        assertArrayEquals("problem " + p + ": " + Arrays.toString(minimums) + " " + Arrays.toString(maximums) + " " + Arrays.toString(weights) + " in " + allocated, expected, spans);
+      }
+    }
+  }
 }
@@ -0,0 +1,153 @@
+package hs.smartlayout;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LayoutSessionTest {
+  private final List<Container> panels = new ArrayList<Container>();
+  private int measureCount;
+
+  @Before
+  public void before() {
+    Container parent = null;
+
+    for(int i = 0; i < 5; i++) {
+      Container panel = new Container();
+
+      panel.setLayout(new SmartLayout(true));
+
+      if(parent != null) {
+        parent.add(panel, new Constraints());
+      }
+
+      panels.add(panel);
+      parent = panel;
+    }
+
+    parent.add(new Container() {
+      @Override
+      public Dimension getPreferredSize() {
+        measureCount++;
+        return new Dimension(10, 10);
+      }
+    }, new Constraints());
+
+    panels.get(0).setSize(300, 200);
+  }
+
+  @Test
+  public void shouldMeasureComponentsAgainWithoutSession() {
+    layOutTwice();
+
+    Assert.assertEquals(2, measureCount);
+  }
+
+  @Test
+  public void shouldMeasureComponentsOnlyOnceDuringSession() {
+    LayoutSession session = LayoutSession.open();
+
+    try {
+      layOutTwice();
+    }
+    finally {
+      session.close();
+    }
+
+    Assert.assertEquals(1, measureCount);
+
+    layOutTwice();  // the panels are still valid, so only the layout after invalidating them measures again
+
+    Assert.assertEquals(2, measureCount);
+  }
+
+  @Test
+  public void shouldJoinSessionAlreadyOpen() {
+    LayoutSession session = LayoutSession.open();
+
+    try {
+      Assert.assertSame(session, LayoutSession.open());
+
+      session.close();
+      layOutTwice();
+    }
+    finally {
+      session.close();
+    }
+
+    Assert.assertEquals(1, measureCount);
+  }
+
+  @Test
+  public void shouldOpenSessionWhileMeasuring() {
+    final List<Boolean> sessionsOpen = new ArrayList<Boolean>();
+    Container panel = new Container();
+
+    panel.setLayout(new SmartLayout(true));
+    panel.add(new Container() {
+      @Override
+      public Dimension getPreferredSize() {
+        sessionsOpen.add(isSessionOpen());
+        return new Dimension(10, 10);
+      }
+    }, new Constraints());
+
+    panel.getPreferredSize();
+
+    Assert.assertEquals("[true]", sessionsOpen.toString());
+    Assert.assertFalse(isSessionOpen());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotCloseSessionTwice() {
+    LayoutSession session = LayoutSession.open();
+
+    session.close();
+    session.close();
+  }
+
+  /*
+   * Opening a session twice only returns the same session if one was already open.
+   */
+  private static boolean isSessionOpen() {
+    LayoutSession first = LayoutSession.open();
+
+    first.close();
+
+    LayoutSession second = LayoutSession.open();
+
+    second.close();
+
+    return first == second;
+  }
+
+  /*
+   * Lays out all panels, then invalidates them like resizing them would, and lays them out again.
+   */
+  private void layOutTwice() {
+    layOut(panels.get(0));
+
+    for(Container panel : panels) {
+      panel.invalidate();
+    }
+
+    layOut(panels.get(0));
+  }
+
+  private static void layOut(Container container) {
+    container.doLayout();
+
+    for(Component component : container.getComponents()) {
+      if(component instanceof Container) {
+        layOut((Container)component);
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package hs.smartlayout;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class LinePositionsTest {
+  private final LinePositions positions = new LinePositions();
+
+  @Test
+  public void shouldCalculateOffsetsAndSizes() {
+    positions.reset(new int[] {10, 20, 30}, 3, 5);
+
+    Assert.assertEquals(0, positions.getOffset(0));
+    Assert.assertEquals(15, positions.getOffset(1));
+    Assert.assertEquals(40, positions.getOffset(2));
+    Assert.assertEquals(20, positions.getSize(1, 1));
+    Assert.assertEquals(55, positions.getSize(1, 2));
+    Assert.assertEquals(70, positions.getSize(0, 3));
+  }
+
+  @Test
+  public void shouldNotAddSpacingAfterLeadingEmptyLines() {
+    positions.reset(new int[] {0, 0, 30, 0}, 4, 5);
+
+    Assert.assertEquals(0, positions.getSize(0, 2));
+    Assert.assertEquals(30, positions.getSize(0, 3));
+    Assert.assertEquals(35, positions.getSize(1, 3));
+    Assert.assertEquals(10, positions.getOffset(2));
+  }
+
+  @Test
+  public void shouldMatchSummedSizes() {
+    Random random = new Random(1);
+
+    for(int n = 0; n < 200; n++) {
+      int count = 1 + random.nextInt(20);
+      int negative = n % 2 == 0 ? 0 : 2;  // half of the problems have negative spans or spacing
+      int spacing = random.nextInt(10) - negative;
+      int[] spans = new int[count + random.nextInt(3)];
+
+      for(int i = 0; i < spans.length; i++) {
+        spans[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(50) - negative;
+      }
+
+      positions.reset(spans, count, spacing);
+
+      for(int line = 0; line < count; line++) {
+        int offset = 0;
+
+        for(int i = 0; i < line; i++) {
+          offset += spans[i] + spacing;
+        }
+
+        Assert.assertEquals(offset, positions.getOffset(line));
+
+        for(int span = 1; line + span <= count; span++) {
+          int size = 0;
+
+          for(int i = line; i < line + span; i++) {
+            if(size != 0) {
+              size += spacing;
+            }
+            size += spans[i];
+          }
+
+          Assert.assertEquals(size, positions.getSize(line, span));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package hs.smartlayout;
+
+import java.awt.Component;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class OccupancyGridTest {
+  private final OccupancyGrid grid = new OccupancyGrid();
+  private final Block block = new Block(new Component() {}, new Constraints(), 0, 0);
+
+  @Test
+  public void shouldKeepTrackOfOccupiedCells() {
+    grid.set(0, block);
+    grid.set(1000, block);
+
+    Assert.assertSame(block, grid.get(0));
+    Assert.assertSame(block, grid.get(1000));
+    Assert.assertNull(grid.get(1));
+    Assert.assertNull(grid.get(5000));
+    Assert.assertTrue(grid.isOccupied(1000));
+    Assert.assertFalse(grid.isOccupied(999));
+
+    grid.remove(1000);
+
+    Assert.assertNull(grid.get(1000));
+    Assert.assertFalse(grid.isOccupied(1000));
+  }
+
+  @Test
+  public void shouldFindNextFreePosition() {
+    for(int i = 0; i < 100; i++) {
+      if(i != 70) {
+        grid.set(i, block);
+      }
+    }
+
+    Assert.assertEquals(70, grid.nextFreePosition(0));
+    Assert.assertEquals(70, grid.nextFreePosition(70));
+    Assert.assertEquals(100, grid.nextFreePosition(71));
+
+    grid.clear();
+
+    Assert.assertEquals(0, grid.nextFreePosition(0));
+    Assert.assertNull(grid.get(50));
+  }
+}
@@ -0,0 +1,87 @@
+package hs.smartlayout;
+
+import java.awt.Component;
+import java.lang.management.ManagementFactory;
+
+import javax.swing.BorderFactory;
+import javax.swing.JPanel;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmartLayoutAllocationTest {
+  private static final int WARM_UP_CALLS = 2000;
+  private static final int MEASURED_CALLS = 1000;
+
+  private com.sun.management.ThreadMXBean threadMXBean;
+
+  @Before
+  public void before() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+    threadMXBean = (com.sun.management.ThreadMXBean)bean;
+
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void layoutContainerShouldNotAllocateAtNewSizes() {
+    Anchor[] anchors = Anchor.values();
+    SmartLayout layout = new SmartLayout(true, 4);
+    JPanel panel = new JPanel(layout);
+
+    panel.setBorder(BorderFactory.createEmptyBorder(3, 4, 5, 6));
+
+    for(int i = 0; i < 40; i++) {
+      Constraints constraints = new Constraints(anchors[i % anchors.length]).setMinWidth(10 + i % 7).setMinHeight(5 + i % 3);
+
+      if(i % 5 == 0) {
+        constraints.setMaxWidth(30);
+      }
+      if(i % 9 == 0) {
+        constraints.setSpanX(2);
+      }
+
+      panel.add(new Component() {}, constraints);
+    }
+
+    for(int i = 0; i < WARM_UP_CALLS; i++) {
+      layoutAtSize(layout, panel, 300 + i % 200, 400 + i % 150);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long allocated = 0;
+    long overhead = Long.MAX_VALUE;
+
+    for(int i = 0; i < 10; i++) {
+      overhead = Math.min(overhead, -threadMXBean.getThreadAllocatedBytes(threadId) + threadMXBean.getThreadAllocatedBytes(threadId));
+    }
+
+    for(int i = 0; i < MEASURED_CALLS; i++) {
+      allocated += layoutAtSize(layout, panel, 300 + i % 200, 400 + i % 150) - overhead;
+    }
+
+    Assert.assertTrue("allocated " + allocated + " bytes in " + MEASURED_CALLS + " calls", allocated < MEASURED_CALLS);
+  }
+
+  /*
+   * Resizes the panel, which invalidates the layout, and calculates the layout constraints again
+   * before measuring the bytes allocated by layoutContainer.
+   */
+  private long layoutAtSize(SmartLayout layout, JPanel panel, int width, int height) {
+    panel.setSize(width, height);
+    layout.preferredLayoutSize(panel);
+
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+    layout.layoutContainer(panel);
+
+    return threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+  }
+}
@@ -0,0 +1,191 @@
+package hs.smartlayout;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.swing.JPanel;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmartLayoutAsyncTest {
+  private final List<Runnable> tasks = new ArrayList<Runnable>();
+  private final Executor executor = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+  };
+
+  private final SmartLayout layout = new SmartLayout(true, 2);
+  private final Container container = new Container();
+  private final List<Component> components = new ArrayList<Component>();
+
+  @Before
+  public void before() {
+    container.setLayout(layout);
+
+    for(int i = 0; i < 5; i++) {
+      Component component = new Component() {};
+
+      component.setPreferredSize(new Dimension(10 + i * 7, 10 + i * 3));
+      components.add(component);
+      container.add(component, i == 2 ? new Constraints().setSpanX(2) : new Constraints());
+    }
+
+    container.add(new Component() {}, new Constraints());
+  }
+
+  @Test
+  public void shouldApplySameBoundsAsSynchronousLayout() throws Exception {
+    String expected = layOutSynchronously(300, 200);
+
+    layout.setExecutor(executor);
+    container.setSize(300, 200);
+    layOutOnEventDispatchThread();
+
+    Assert.assertEquals(1, tasks.size());
+    Assert.assertEquals(0, components.get(1).getWidth());
+
+    runTasks();
+
+    Assert.assertEquals(expected, getBounds());
+  }
+
+  @Test
+  public void shouldDiscardBoundsOfEarlierLayouts() throws Exception {
+    String expected = layOutSynchronously(250, 150);
+
+    layout.setExecutor(executor);
+    container.setSize(300, 200);
+    layOutOnEventDispatchThread();
+    container.setSize(250, 150);
+    layOutOnEventDispatchThread();
+
+    Assert.assertEquals(2, tasks.size());
+
+    tasks.remove(0).run();
+    waitForEventDispatchThread();
+
+    Assert.assertEquals(0, components.get(1).getWidth());
+
+    runTasks();
+
+    Assert.assertEquals(expected, getBounds());
+  }
+
+  @Test
+  public void shouldMeasureOncePerAsynchronousLayout() throws Exception {
+    final int[] measureCount = new int[1];
+    SmartLayout panelLayout = new SmartLayout(true, 2);
+    JPanel panel = new JPanel(panelLayout);
+
+    for(int i = 0; i < 4; i++) {
+      panel.add(new Component() {
+        @Override
+        public Dimension getPreferredSize() {
+          measureCount[0]++;
+
+          return new Dimension(20, 10);
+        }
+      }, new Constraints());
+    }
+
+    new JPanel().add(panel);
+    panelLayout.setExecutor(executor);
+    panel.setSize(300, 200);
+    layOutOnEventDispatchThread(panelLayout, panel);
+    runTasks();
+
+    Assert.assertEquals(4, measureCount[0]);
+
+    layOutOnEventDispatchThread(panelLayout, panel);
+
+    Assert.assertEquals(0, tasks.size());
+    Assert.assertEquals(4, measureCount[0]);
+  }
+
+  @Test
+  public void shouldLayOutImmediatelyWhenSpansAreCached() throws Exception {
+    layout.setExecutor(executor);
+    container.setSize(300, 200);
+    layOutOnEventDispatchThread();
+    runTasks();
+
+    String expected = getBounds();
+
+    for(Component component : components) {
+      component.setBounds(0, 0, 0, 0);
+    }
+
+    layOutOnEventDispatchThread();
+
+    Assert.assertEquals(0, tasks.size());
+    Assert.assertEquals(expected, getBounds());
+  }
+
+  private String layOutSynchronously(int width, int height) {
+    container.setSize(width, height);
+    layout.layoutContainer(container);
+
+    String bounds = getBounds();
+
+    for(Component component : components) {
+      component.setBounds(0, 0, 0, 0);
+    }
+
+    layout.setSpanCacheCapacity(SmartLayout.DEFAULT_SPAN_CACHE_CAPACITY);
+
+    return bounds;
+  }
+
+  private void layOutOnEventDispatchThread() throws Exception {
+    layOutOnEventDispatchThread(layout, container);
+  }
+
+  private static void layOutOnEventDispatchThread(final SmartLayout layout, final Container container) throws Exception {
+    EventQueue.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        layout.layoutContainer(container);
+      }
+    });
+  }
+
+  /*
+   * Runs the tasks off the event dispatch thread, and waits for the bounds they post to the event
+   * dispatch thread to be applied.
+   */
+  private void runTasks() throws Exception {
+    while(!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+
+    waitForEventDispatchThread();
+  }
+
+  private static void waitForEventDispatchThread() throws Exception {
+    EventQueue.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+  }
+
+  private String getBounds() {
+    StringBuilder builder = new StringBuilder();
+
+    for(Component component : components) {
+      builder.append(component.getBounds()).append("\n");
+    }
+
+    return builder.toString();
+  }
+}
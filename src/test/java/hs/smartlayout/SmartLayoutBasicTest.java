@@ -171,6 +171,44 @@ public class SmartLayoutBasicTest {
     assertEquals(0, button1.getY());
   }
 
+  @Test
+  public void shouldReuseSpansForSizesLaidOutBefore() {
+    SmartLayout layout = new SmartLayout(true, 2);
+
+    verticalPanel.setLayout(layout);
+    verticalPanel.add(button1, new Constraints());
+    verticalPanel.add(button2, new Constraints().setMaxWidth(100));
+
+    verticalPanel.setSize(1000, 500);
+    verticalPanel.doLayout();
+    verticalPanel.setSize(800, 500);
+    verticalPanel.doLayout();
+    verticalPanel.setSize(1000, 500);
+    verticalPanel.doLayout();
+
+    assertEquals(3, (int)layout.getSpanCacheHitCount());
+    assertEquals(3, (int)layout.getSpanCacheMissCount());
+    assertEquals(100, button2.getWidth());
+    assertEquals(895, button1.getWidth());
+  }
+
+  @Test
+  public void shouldNotReuseSpansWhenLimitsChange() {
+    Constraints constraints = new Constraints().setMaxWidth(100);
+
+    verticalPanel.setLayout(new SmartLayout(true, 2));
+    verticalPanel.add(button1, new Constraints());
+    verticalPanel.add(button2, constraints);
+    verticalPanel.setSize(1000, 500);
+    verticalPanel.doLayout();
+
+    constraints.setMaxWidth(200);
+    verticalPanel.invalidate();
+    verticalPanel.doLayout();
+
+    assertEquals(200, button2.getWidth());
+  }
+
   @Test
   public void shouldIgnoreGap() {
     verticalPanel.setLayout(new SmartLayout(true, 2));
@@ -179,6 +217,72 @@ public class SmartLayoutBasicTest {
     verticalPanel.add(button3, new Constraints());
   }
 
+  /*
+   * Case: [A][A]
+   *       [B][C]
+   *
+   * The minimum width of A should only add to the column which B does not already make wide
+   * enough, even though A is added first.
+   */
+  @Test
+  public void shouldConsiderSingleColumnComponentsBeforeComponentsSpanningColumns() {
+    SmartLayout layout = new SmartLayout(false, 2);
+
+    horizontalPanel.setLayout(layout);
+    horizontalPanel.add(button1, new Constraints().setSpanX(2).setMinWidth(100));
+    horizontalPanel.add(button2, new Constraints().setMinWidth(80));
+    horizontalPanel.add(button3, new Constraints().setMinWidth(10));
+
+    assertEquals(105, layout.minimumLayoutSize(horizontalPanel).width);
+  }
+
+  @Test
+  public void shouldMeasureComponentsOncePerCalculation() {
+    final int[] queries = new int[2];
+    Container component = new Container() {
+      @Override
+      public Dimension getPreferredSize() {
+        queries[0]++;
+        return super.getPreferredSize();
+      }
+
+      @Override
+      public Dimension getMaximumSize() {
+        queries[1]++;
+        return super.getMaximumSize();
+      }
+    };
+
+    verticalPanel.add(component, new Constraints());
+    verticalPanel.getLayout().preferredLayoutSize(verticalPanel);
+
+    assertEquals(1, queries[0]);
+    assertEquals(1, queries[1]);
+  }
+
+  @Test
+  public void shouldOnlyCalculateLimitsAgainWhenMeasurementsChange() {
+    SmartLayout layout = new SmartLayout(true, 2);
+
+    verticalPanel.setLayout(layout);
+    verticalPanel.add(button1, new Constraints());
+    verticalPanel.add(button2, new Constraints());
+
+    verticalPanel.setSize(1000, 500);
+    verticalPanel.doLayout();
+    verticalPanel.setSize(800, 500);
+    verticalPanel.doLayout();
+
+    assertEquals(1, layout.getLimitCalculationCount());
+
+    button2.setPreferredSize(new Dimension(300, 10));
+    verticalPanel.invalidate();
+    verticalPanel.doLayout();
+
+    assertEquals(2, layout.getLimitCalculationCount());
+    assertEquals(345, layout.minimumLayoutSize(verticalPanel).width);
+  }
+
 
 //  @Test // Not sure if this actually tests SmartLayout
 //  public void shouldRespectBorderSize() {
@@ -1,6 +1,12 @@
 package hs.smartlayout;
 
 import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -96,4 +102,199 @@ public class SmartLayoutTest {
   public void shouldSilentlyIgnoreRemovingComponentThatWasNeverAdded() {
     verticalLayout.removeLayoutComponent(compA);
   }
+
+  @Test
+  public void shouldPlaceRemainingComponentsAsIfTheyWereAddedAgain() {
+    Random random = new Random(1);
+
+    for(int i = 0; i < 200; i++) {
+      boolean vertical = random.nextBoolean();
+      List<Component> components = new ArrayList<Component>();
+      List<Constraints> constraints = new ArrayList<Constraints>();
+      SmartLayout layout = new SmartLayout(vertical, 3);
+
+      for(int j = 0; j < 15; j++) {
+        Component component = createComponent();
+        Constraints c = vertical ? new Constraints().setSpanY(1 + random.nextInt(2)) : new Constraints().setSpanX(1 + random.nextInt(2));
+
+        if(add(layout, component, c)) {
+          components.add(component);
+          constraints.add(c);
+        }
+      }
+
+      int index = random.nextInt(components.size());
+      SmartLayout expectedLayout = new SmartLayout(vertical, 3);
+      boolean expectedValid = true;
+
+      for(int j = 0; j < components.size(); j++) {
+        if(j != index && expectedValid) {
+          expectedValid = add(expectedLayout, createComponent(), constraints.get(j));
+        }
+      }
+
+      if(!expectedValid) {
+        continue;
+      }
+
+      layout.removeLayoutComponent(components.remove(index));
+      constraints.remove(index);
+
+      String actual = layOut(layout, components);
+
+      SmartLayout freshLayout = new SmartLayout(vertical, 3);
+
+      for(int j = 0; j < components.size(); j++) {
+        freshLayout.addLayoutComponent(components.get(j), constraints.get(j));
+      }
+
+      Assert.assertEquals("case " + i, layOut(freshLayout, components), actual);
+    }
+  }
+
+  @Test
+  public void shouldAddComponentsInBulkLikeOneByOne() {
+    Container container = new Container();
+    Container expectedContainer = new Container();
+    List<Component> components = new ArrayList<Component>();
+    List<Constraints> constraints = new ArrayList<Constraints>();
+    List<Component> expectedComponents = new ArrayList<Component>();
+
+    container.setLayout(verticalLayout);
+    expectedContainer.setLayout(new SmartLayout(true, 3, 17, 23));
+
+    for(int i = 0; i < 20; i++) {
+      Constraints c = i % 4 == 0 ? new Constraints().setSpanX(3) : i % 4 == 1 ? new Constraints().setMinWidth(30) : new Constraints();
+
+      components.add(createComponent());
+      constraints.add(c);
+      expectedComponents.add(createComponent());
+      expectedContainer.add(expectedComponents.get(i), c);
+    }
+
+    verticalLayout.addLayoutComponents(container, components, constraints);
+
+    Assert.assertEquals(20, container.getComponentCount());
+    Assert.assertEquals(layOut(expectedContainer, expectedComponents), layOut(container, components));
+  }
+
+  @Test
+  public void shouldNotAddAnyComponentsWhenOneCannotBePlaced() {
+    Container container = new Container();
+
+    container.setLayout(verticalLayout);
+
+    try {
+      verticalLayout.addLayoutComponents(container, Arrays.asList(compA, compB, compC), Arrays.asList(new Constraints(), new Constraints().setSpanY(2), new Constraints().setSpanX(5)));
+      Assert.fail();
+    }
+    catch(IllegalArgumentException e) {
+      // expected
+    }
+
+    Assert.assertEquals(0, container.getComponentCount());
+
+    container.add(compD, new Constraints().setSpanX(3).setSpanY(2));  // would overlap A and B if they were added
+  }
+
+  @Test
+  public void shouldNotAddAnyComponentsWhenOneHasNoConstraints() {
+    Container container = new Container();
+
+    container.setLayout(verticalLayout);
+
+    try {
+      verticalLayout.addLayoutComponents(container, Arrays.asList(compA, compB, compC), Arrays.asList(new Constraints(), new Constraints().setSpanY(2), null));
+      Assert.fail();
+    }
+    catch(IllegalArgumentException e) {
+      // expected
+    }
+
+    Assert.assertEquals(0, container.getComponentCount());
+
+    container.add(compD, new Constraints().setSpanX(3).setSpanY(2));  // would overlap A and B if they were added
+  }
+
+  /*
+   * Case: [A][A]...
+   *       ...[B][B]
+   *
+   * Should give the columns the same minimums regardless of which spanning block is processed
+   * first.
+   */
+  @Test
+  public void shouldSolveSpanningMinimumsRegardlessOfOrder() {
+    Block a = new Block(compA, new Constraints().setSpanX(2).setMinWidth(100), 0, 0);
+    Block b = new Block(compB, new Constraints().setSpanX(2).setMinWidth(300), 1, 1);
+
+    LineLimit[] limits = calculateColumnLimits(a, b);
+
+    Assert.assertEquals(Arrays.toString(limits), Arrays.toString(calculateColumnLimits(b, a)));
+    Assert.assertTrue(limits[0].minimum + limits[1].minimum >= 100);
+    Assert.assertTrue(limits[1].minimum + limits[2].minimum >= 300);
+    Assert.assertEquals(300, limits[0].minimum + limits[1].minimum + limits[2].minimum);
+  }
+
+  private static LineLimit[] calculateColumnLimits(Block... blocks) {
+    LineLimit[] columnLimits = new LineLimit[3];
+
+    SmartLayout.calculateLimits(Arrays.asList(blocks), columnLimits, new LineLimit[2]);
+
+    return columnLimits;
+  }
+
+  private static boolean add(SmartLayout layout, Component component, Constraints constraints) {
+    try {
+      layout.addLayoutComponent(component, constraints);
+
+      return true;
+    }
+    catch(IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static Component createComponent() {
+    Component component = new Component() {};
+
+    component.setPreferredSize(new Dimension(10, 10));
+
+    return component;
+  }
+
+  /*
+   * Fills the cells after the components first, which also checks that components added after a
+   * removal end up in the same place.
+   */
+  private static String layOut(Container container, List<Component> components) {
+    StringBuilder builder = new StringBuilder();
+
+    container.setSize(container.getPreferredSize());
+    container.doLayout();
+
+    for(Component component : components) {
+      builder.append(component.getBounds()).append("\n");
+    }
+
+    return builder.toString();
+  }
+
+  private static String layOut(SmartLayout layout, List<Component> components) {
+    Container container = new Container();
+    StringBuilder builder = new StringBuilder();
+
+    for(int i = 0; i < 6; i++) {
+      layout.addLayoutComponent(createComponent(), new Constraints());
+    }
+
+    container.setSize(layout.preferredLayoutSize(container));
+    layout.layoutContainer(container);
+
+    for(Component component : components) {
+      builder.append(component.getBounds()).append("\n");
+    }
+
+    return builder.toString();
+  }
 }
@@ -0,0 +1,186 @@
+package hs.smartlayout;
+
+import hs.smartlayout.classic.ClassicSpaceDistributor;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+import hs.smartlayout.multicolumn.DirectSpaceDistributor;
+import hs.smartlayout.multicolumn.LoopingMinimumSolver;
+import hs.smartlayout.multicolumn.LoopingSpaceDistributor;
+import hs.smartlayout.multicolumn.MinimumSolver;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpaceDistributorAllocationTest {
+  private static final int WARM_UP_CALLS = 2000;
+  private static final int MEASURED_CALLS = 1000;
+
+  private com.sun.management.ThreadMXBean threadMXBean;
+
+  @Before
+  public void before() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+    threadMXBean = (com.sun.management.ThreadMXBean)bean;
+
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void classicSpaceDistributorShouldNotAllocateWhenShapeIsUnchanged() {
+    List<Limit> limits = new ArrayList<Limit>();
+
+    for(int i = 0; i < 20; i++) {
+      limits.add(new Limit(i).min(i % 5).max(10 + i % 7 * 5).weight(1 + i % 3));
+    }
+
+    assertNoAllocations(new ClassicSpaceDistributor(), 20, limits, Group.create(20));
+  }
+
+  @Test
+  public void directSpaceDistributorShouldNotAllocateWhenShapeIsUnchanged() {
+    assertNoAllocations(new DirectSpaceDistributor(), 20, createMultiColumnLimits(20), createGroups());
+  }
+
+  @Test
+  public void loopingSpaceDistributorShouldNotAllocateWhenShapeIsUnchanged() {
+    assertNoAllocations(new LoopingSpaceDistributor(), 20, createMultiColumnLimits(20), createGroups());
+  }
+
+  @Test
+  public void loopingMinimumSolverShouldNotAllocatePerPixel() {
+    assertNoAllocationsPerPixel(new MinimumFixer() {
+      @Override
+      public int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
+        return LoopingMinimumSolver.fixMinimums(sizes, weights, rootGroup, limits);
+      }
+    });
+  }
+
+  @Test
+  public void minimumSolverShouldNotAllocatePerPixel() {
+    assertNoAllocationsPerPixel(new MinimumFixer() {
+      @Override
+      public int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits) {
+        return MinimumSolver.fixMinimums(sizes, weights, rootGroup, limits);
+      }
+    });
+  }
+
+  /*
+   * Distributes a varying amount of space, like when a window is being resized, and checks that
+   * once warmed up this allocates less than a byte per call.
+   */
+  private void assertNoAllocations(AbstractSpaceDistributor distributor, int columnCount, List<Limit> limits, Group rootGroup) {
+    int[] sizes = new int[columnCount];
+
+    for(int i = 0; i < WARM_UP_CALLS; i++) {
+      distributor.distributeInto(200 + i % 100, columnCount, limits, rootGroup, sizes);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+    for(int i = 0; i < MEASURED_CALLS; i++) {
+      distributor.distributeInto(200 + i % 100, columnCount, limits, rootGroup, sizes);
+    }
+
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    Assert.assertTrue("allocated " + allocated + " bytes in " + MEASURED_CALLS + " calls", allocated < MEASURED_CALLS);
+  }
+
+  /*
+   * Fixes the same minimums at two different scales, and checks that the larger minimums, which
+   * take a hundred times more pixels, do not cause more allocations.
+   */
+  private void assertNoAllocationsPerPixel(MinimumFixer fixer) {
+    List<Limit> smallLimits = createMinimumLimits(1);
+    List<Limit> largeLimits = createMinimumLimits(100);
+
+    for(int i = 0; i < 100; i++) {
+      fixer.fixMinimums(new int[20], createWeights(20), createGroups(), smallLimits);
+      fixer.fixMinimums(new int[20], createWeights(20), createGroups(), largeLimits);
+    }
+
+    long smallAllocated = measureFixMinimums(fixer, smallLimits);
+    long largeAllocated = measureFixMinimums(fixer, largeLimits);
+
+    Assert.assertTrue("allocated " + smallAllocated + " bytes for small minimums, but " + largeAllocated + " bytes for large minimums", largeAllocated < smallAllocated + 1024);
+  }
+
+  private long measureFixMinimums(MinimumFixer fixer, List<Limit> limits) {
+    int[] sizes = new int[20];
+    double[] weights = createWeights(20);
+    Group rootGroup = createGroups();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+    fixer.fixMinimums(sizes, weights, rootGroup, limits);
+
+    return threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+  }
+
+  private static List<Limit> createMinimumLimits(int scale) {
+    List<Limit> limits = new ArrayList<Limit>();
+
+    for(int i = 0; i < 20; i += 2) {
+      limits.add(new Limit(i).min(i % 3 * scale).max(20 * scale).weight(1 + i % 3));
+    }
+
+    for(int i = 0; i + 3 < 20; i += 4) {
+      limits.add(new Limit(i, i + 3).min((10 + i) * scale));
+    }
+
+    limits.add(new Limit(2, 9).max(50 * scale));
+
+    return limits;
+  }
+
+  private static double[] createWeights(int columnCount) {
+    double[] weights = new double[columnCount];
+
+    Arrays.fill(weights, 1.0);
+
+    return weights;
+  }
+
+  private static List<Limit> createMultiColumnLimits(int columnCount) {
+    List<Limit> limits = new ArrayList<Limit>();
+
+    for(int i = 0; i < columnCount; i++) {
+      limits.add(new Limit(i).min(i % 5).max(10 + i % 7 * 5).weight(1 + i % 3));
+    }
+
+    for(int i = 0; i + 3 < columnCount; i += 4) {
+      limits.add(new Limit(i, i + 3).min(30));
+    }
+
+    limits.add(new Limit(2, 9).max(60));
+
+    return limits;
+  }
+
+  private static Group createGroups() {
+    return Group.create(
+      new Group(new Group(4), new Group(4)),
+      new Group(4),
+      new Group(new Group(2), new Group(6))
+    );
+  }
+
+  private interface MinimumFixer {
+    int fixMinimums(int[] sizes, double[] weights, Group rootGroup, List<Limit> limits);
+  }
+}
@@ -0,0 +1,53 @@
+package hs.smartlayout;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SpanCacheTest {
+  private final SpanCache cache = new SpanCache(2);
+
+  @Test
+  public void shouldReturnStoredSpans() {
+    Assert.assertNull(cache.get(100));
+
+    int[] spans = cache.add(100, 3);
+
+    Assert.assertTrue(spans.length >= 3);
+    Assert.assertSame(spans, cache.get(100));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldReplaceLeastRecentlyUsedSpans() {
+    int[] spans100 = cache.add(100, 3);
+    cache.add(200, 3);
+    cache.get(100);
+
+    int[] spans300 = cache.add(300, 3);
+
+    Assert.assertSame(spans100, cache.get(100));
+    Assert.assertNull(cache.get(200));
+    Assert.assertSame(spans300, cache.get(300));
+  }
+
+  @Test
+  public void shouldReuseArraysAfterClear() {
+    int[] spans = cache.add(100, 3);
+
+    cache.clear();
+
+    Assert.assertNull(cache.get(100));
+    Assert.assertSame(spans, cache.add(200, 2));
+  }
+
+  @Test
+  public void shouldNotKeepSpansWithoutCapacity() {
+    SpanCache cache = new SpanCache(0);
+
+    cache.add(100, 3);
+
+    Assert.assertNull(cache.get(100));
+  }
+}
@@ -0,0 +1,51 @@
+package hs.smartlayout;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SpanIndexTest {
+  private final SpanIndex index = new SpanIndex();
+
+  @Test
+  public void shouldOrderCellsBySpanKeepingOrderOfEqualSpans() {
+    index.add(0, 2);
+    index.add(1, 1);
+    index.add(2, 3);
+    index.add(3, 1);
+    index.add(4, 2);
+
+    Assert.assertEquals(5, index.size());
+    Assert.assertEquals(1, index.get(0));
+    Assert.assertEquals(3, index.get(1));
+    Assert.assertEquals(0, index.get(2));
+    Assert.assertEquals(4, index.get(3));
+    Assert.assertEquals(2, index.get(4));
+    Assert.assertEquals(3, index.getSpan(4));
+  }
+
+  @Test
+  public void shouldRemoveCells() {
+    index.add(0, 1);
+    index.add(1, 1);
+    index.add(2, 2);
+
+    Assert.assertTrue(index.remove(0, 1));
+    Assert.assertFalse(index.remove(0, 1));
+    Assert.assertFalse(index.remove(2, 1));
+    Assert.assertEquals(2, index.size());
+    Assert.assertEquals(1, index.get(0));
+    Assert.assertEquals(2, index.get(1));
+  }
+
+  @Test
+  public void shouldGrowAsNeeded() {
+    for(int i = 0; i < 100; i++) {
+      index.add(i, 100 - i);
+    }
+
+    Assert.assertEquals(100, index.size());
+    Assert.assertEquals(99, index.get(0));
+    Assert.assertEquals(0, index.get(99));
+  }
+}
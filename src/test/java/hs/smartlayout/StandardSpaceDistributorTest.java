@@ -1,8 +1,8 @@
 package hs.smartlayout;
 
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
-import hs.smartlayout.distributor.SpaceDistributor;
 
 import java.util.Arrays;
 import org.junit.Rule;
@@ -14,7 +14,7 @@ public abstract class StandardSpaceDistributorTest {
   @Rule
   public static final Timeout globalTimeout = new Timeout(120000);
 
-  protected abstract SpaceDistributor getSpaceDistributor();
+  protected abstract AbstractSpaceDistributor getSpaceDistributor();
 
   @Test
   public void shouldAssignAllSpaceToSingleComponent() {
@@ -185,6 +185,22 @@ public abstract class StandardSpaceDistributorTest {
     }
   }
 
+  @Test
+  public void shouldDistributeAllSpacesLikeOneByOne() {
+    Solver solver = new Solver(3,
+      new Limit(0).min(10).weight(2),
+      new Limit(1).max(25),
+      new Limit(2).min(5).max(60).weight(0.5)
+    );
+
+    int[] spaces = {50, 0, 17, 120, 17, 3, -5, 80, 200};
+    int[][] results = solver.solveAll(spaces);
+
+    for(int i = 0; i < spaces.length; i++) {
+      Assert.assertEquals("for " + spaces[i], Arrays.toString(solver.solve(spaces[i])), Arrays.toString(results[i]));
+    }
+  }
+
   public class Solver {
     private final Limit[] restrictions;
     private final int columnCount;
@@ -208,5 +224,9 @@ public abstract class StandardSpaceDistributorTest {
     public int[] solve(int space) {
       return getSpaceDistributor().distribute(space, columnCount, Arrays.asList(restrictions), rootGroup);
     }
+
+    public int[][] solveAll(int[] spaces) {
+      return getSpaceDistributor().distributeAll(spaces, columnCount, Arrays.asList(restrictions), rootGroup);
+    }
   }
 }
@@ -0,0 +1,140 @@
+package hs.smartlayout;
+
+/**
+ * The implementation of {@link LayoutRequirements#calculateTiledPositions(int, int, int[], int[], double[], int[], int[], int[])}
+ * from before reachable maximums were determined with running sums: for each component the space
+ * needed to reach its maximum is summed over all other components, which takes quadratic time.
+ * Kept as a reference to check the faster implementation against.
+ */
+public class SummingLayoutRequirements {
+
+  public static int[] calculateTiledPositions(int allocated, int[] minimumsInput, int[] maximumsInput, double[] weightsInput) {
+    int count = minimumsInput.length;
+    int[] minimums = minimumsInput.clone();
+    int[] maximums = maximumsInput.clone();
+    double[] weights = weightsInput.clone();
+    int[] order = new int[count];
+    int[] spans = new int[count];
+    double w = 0.0;
+    int allocatedNonFixed = allocated;
+    int orderCount = 0;
+
+    for(int i = 0; i < count; i++) {
+      maximums[i] = Math.max(minimums[i], maximums[i]);
+
+      if(minimums[i] == maximums[i]) {
+        weights[i] = 0;
+      }
+    }
+
+    for(int i = 0; i < count; i++) {
+      spans[i] = minimums[i];
+
+      if(weights[i] != 0) {
+        double m = maximums[i];
+        double sw = maximums[i] / weights[i];
+
+        for(int j = 0; j < count; j++) {
+          if(i != j) {
+            m += Math.max(Math.min(weights[j] * sw, maximums[j]), minimums[j]);
+          }
+        }
+
+        if(m <= allocated) {
+          spans[i] = maximums[i];
+          allocatedNonFixed -= maximums[i];
+        }
+        else {
+          w += weights[i];
+          order[orderCount++] = i;
+        }
+      }
+      else {
+        spans[i] = minimums[i];
+        allocatedNonFixed -= minimums[i];
+      }
+    }
+
+    sortSizes(order, orderCount, minimums, weights);
+
+    for(int k = 0; k < orderCount; k++) {
+      int i = order[k];
+      int span = minimums[i];
+
+      if(minimums[i] / weights[i] * w < allocatedNonFixed) {
+        span = (int)Math.round(allocatedNonFixed / w * weights[i]);
+      }
+
+      allocatedNonFixed -= span;
+      w -= weights[i];
+
+      spans[i] = span;
+    }
+
+    return spans;
+  }
+
+  private static void sortSizes(int[] order, int count, int[] minimums, double[] weights) {
+    for(int i = count / 2 - 1; i >= 0; i--) {
+      siftDown(order, i, count, minimums, weights);
+    }
+
+    for(int end = count - 1; end > 0; end--) {
+      int swap = order[0];
+
+      order[0] = order[end];
+      order[end] = swap;
+
+      siftDown(order, 0, end, minimums, weights);
+    }
+  }
+
+  private static void siftDown(int[] order, int position, int count, int[] minimums, double[] weights) {
+    int value = order[position];
+
+    for(;;) {
+      int child = position * 2 + 1;
+
+      if(child >= count) {
+        break;
+      }
+
+      if(child + 1 < count && compareSizes(order[child + 1], order[child], minimums, weights) > 0) {
+        child++;
+      }
+
+      if(compareSizes(order[child], value, minimums, weights) <= 0) {
+        break;
+      }
+
+      order[position] = order[child];
+      position = child;
+    }
+
+    order[position] = value;
+  }
+
+  private static int compareSizes(int a, int b, int[] minimums, double[] weights) {
+    double d = minimums[b] / weights[b] - minimums[a] / weights[a];
+
+    if(d < 0) {
+      return -1;
+    }
+    else if(d > 0) {
+      return 1;
+    }
+    else {
+      d = weights[b] - weights[a];
+
+      if(d < 0) {
+        return -1;
+      }
+      else if(d > 0) {
+        return 1;
+      }
+      else {
+        return a - b;
+      }
+    }
+  }
+}
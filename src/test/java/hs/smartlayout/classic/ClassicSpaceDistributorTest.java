@@ -1,9 +1,9 @@
 package hs.smartlayout.classic;
 
 import hs.smartlayout.StandardSpaceDistributorTest;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
-import hs.smartlayout.distributor.SpaceDistributor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -13,7 +13,7 @@ import org.junit.Test;
 public class ClassicSpaceDistributorTest extends StandardSpaceDistributorTest {
 
   @Override
-  protected SpaceDistributor getSpaceDistributor() {
+  protected AbstractSpaceDistributor getSpaceDistributor() {
     return new ClassicSpaceDistributor();
   }
 
@@ -0,0 +1,104 @@
+package hs.smartlayout.distributor;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class GroupTest {
+
+  @Test
+  public void shouldFindSmallestGroupContainingColumn() {
+    Group a = new Group(2);
+    Group b = new Group(1);
+    Group c = new Group(3);
+    Group bc = new Group(b, c);
+    Group root = Group.create(a, bc);
+
+    Assert.assertSame(a, root.getGroup(0));
+    Assert.assertSame(a, root.getGroup(1));
+    Assert.assertSame(b, root.getGroup(2));
+    Assert.assertSame(c, root.getGroup(5));
+    Assert.assertSame(c, bc.getGroup(4));
+    Assert.assertSame(root, a.getParent());
+    Assert.assertSame(root, root.getGroup(6));
+    Assert.assertSame(a, a.getGroup(4));
+  }
+
+  @Test
+  public void shouldNumberGroupsDepthFirst() {
+    Group a = new Group(2);
+    Group b = new Group(1);
+    Group c = new Group(3);
+    Group bc = new Group(b, c);
+    Group root = Group.create(a, bc);
+
+    Assert.assertEquals(5, root.getGroupCount());
+    Assert.assertEquals(0, root.getIndex());
+    Assert.assertEquals(1, a.getIndex());
+    Assert.assertEquals(2, bc.getIndex());
+    Assert.assertEquals(3, b.getIndex());
+    Assert.assertEquals(4, c.getIndex());
+
+    Assert.assertEquals(-1, root.getParentIndex(0));
+    Assert.assertEquals(0, root.getParentIndex(1));
+    Assert.assertEquals(2, root.getParentIndex(4));
+    Assert.assertEquals(2, root.getStart(2));
+    Assert.assertEquals(5, root.getEnd(2));
+
+    Assert.assertEquals(1, root.getLeafIndex(1));
+    Assert.assertEquals(3, root.getLeafIndex(2));
+    Assert.assertEquals(4, c.getLeafIndex(5));
+    Assert.assertEquals(0, root.getLeafIndex(6));
+  }
+
+  @Test
+  public void shouldNumberGroupsOfConstructedTreeOnFirstUse() {
+    Group a = new Group(2);
+    Group b = new Group(1);
+    Group c = new Group(3);
+    Group bc = new Group(b, c);
+    Group root = new Group(a, bc);
+
+    Assert.assertEquals(5, root.getGroupCount());
+    Assert.assertEquals(0, root.getIndex());
+    Assert.assertEquals(4, c.getIndex());
+    Assert.assertEquals(2, root.getParentIndex(4));
+    Assert.assertEquals(2, root.getStart(2));
+    Assert.assertEquals(5, root.getEnd(2));
+    Assert.assertEquals(3, root.getLeafIndex(2));
+    Assert.assertSame(c, root.getGroup(5));
+    Assert.assertSame(bc, c.getParent());
+  }
+
+  @Test
+  public void shouldHandleWideAndDeepTrees() {
+    Group[] leaves = new Group[5000];
+
+    for(int i = 0; i < leaves.length; i++) {
+      leaves[i] = new Group(1);
+    }
+
+    Group deep = new Group(1);
+
+    for(int i = 0; i < 2000; i++) {
+      deep = new Group(deep);
+    }
+
+    Group root = Group.create(new Group(leaves), deep);
+
+    Assert.assertEquals(5000 + 1 + 2001 + 1, root.getGroupCount());
+
+    for(int i = 0; i < leaves.length; i++) {
+      Assert.assertSame(leaves[i], root.getGroup(i));
+    }
+
+    Group group = root.getGroup(5000);
+    int depth = 0;
+
+    for(int index = group.getIndex(); index != -1; index = root.getParentIndex(index)) {
+      depth++;
+    }
+
+    Assert.assertEquals(2002, depth);
+  }
+}
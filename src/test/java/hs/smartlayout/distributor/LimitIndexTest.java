@@ -0,0 +1,35 @@
+package hs.smartlayout.distributor;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class LimitIndexTest {
+
+  @Test
+  public void shouldFindLimitsCoveringEachColumn() {
+    Limit a = new Limit(0).min(5);
+    Limit b = new Limit(0, 2).max(20);
+    Limit c = new Limit(2, 3).min(10);
+
+    LimitIndex index = new LimitIndex(4, Arrays.asList(a, b, c));
+
+    Assert.assertEquals("[0, 1]", Arrays.toString(index.getLimitIndices(0)));
+    Assert.assertEquals("[1]", Arrays.toString(index.getLimitIndices(1)));
+    Assert.assertEquals("[1, 2]", Arrays.toString(index.getLimitIndices(2)));
+    Assert.assertEquals("[2]", Arrays.toString(index.getLimitIndices(3)));
+    Assert.assertSame(c, index.getLimit(2));
+    Assert.assertEquals(3, index.getLimitCount());
+  }
+
+  @Test
+  public void shouldHandleColumnsWithoutLimits() {
+    LimitIndex index = new LimitIndex(3, Arrays.asList(new Limit(1)));
+
+    Assert.assertEquals(0, index.getLimitIndices(0).length);
+    Assert.assertEquals(1, index.getLimitIndices(1).length);
+    Assert.assertEquals(0, index.getLimitIndices(2).length);
+  }
+}
@@ -1,13 +1,37 @@
 package hs.smartlayout.multicolumn;
 
-import hs.smartlayout.distributor.SpaceDistributor;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
 import hs.smartlayout.multicolumn.DirectSpaceDistributor;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
 public class DirectSpaceDistributorTest extends MultiColumnSpaceDistributorTest {
 
   @Override
-  protected SpaceDistributor getSpaceDistributor() {
+  protected AbstractSpaceDistributor getSpaceDistributor() {
     return new DirectSpaceDistributor();
   }
 
+  @Test
+  public void shouldRespectManyMaximumSizes() {
+    int columnCount = 5000;
+    List<Limit> limits = new ArrayList<Limit>();
+
+    for(int i = 0; i < columnCount; i++) {
+      limits.add(new Limit(i).max(1 + i % 50));
+    }
+
+    int[] sizes = getSpaceDistributor().distribute(1000000, columnCount, limits, Group.create(columnCount));
+
+    for(int i = 0; i < columnCount; i++) {
+      Assert.assertTrue("column " + i + ": " + sizes[i], sizes[i] <= 1 + i % 50);
+    }
+  }
 }
@@ -0,0 +1,50 @@
+package hs.smartlayout.multicolumn;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class FenwickTreeTest {
+
+  @Test
+  public void shouldSumRanges() {
+    FenwickTree tree = new FenwickTree(new int[] {5, 3, 0, 7, 2});
+
+    Assert.assertEquals(17, tree.sum(0, 4));
+    Assert.assertEquals(5, tree.sum(0, 0));
+    Assert.assertEquals(10, tree.sum(1, 3));
+    Assert.assertEquals(2, tree.sum(4, 4));
+  }
+
+  @Test
+  public void shouldMatchSizesAfterChanges() {
+    Random random = new Random(1);
+    int[] sizes = new int[37];
+
+    for(int i = 0; i < sizes.length; i++) {
+      sizes[i] = random.nextInt(100);
+    }
+
+    FenwickTree tree = new FenwickTree(sizes);
+
+    for(int n = 0; n < 1000; n++) {
+      int column = random.nextInt(sizes.length);
+      int delta = random.nextInt(21) - 10;
+
+      sizes[column] += delta;
+      tree.add(column, delta);
+
+      int start = random.nextInt(sizes.length);
+      int end = start + random.nextInt(sizes.length - start);
+      int expected = 0;
+
+      for(int k = start; k <= end; k++) {
+        expected += sizes[k];
+      }
+
+      Assert.assertEquals(expected, tree.sum(start, end));
+    }
+  }
+}
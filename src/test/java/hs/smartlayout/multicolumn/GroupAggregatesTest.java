@@ -0,0 +1,91 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class GroupAggregatesTest {
+  private final Group a = new Group(2);
+  private final Group b = new Group(3);
+  private final Group root = Group.create(a, b);
+  private final double[] weights = createWeights(5);
+  private final GroupAggregates aggregates = new GroupAggregates(root, weights, new int[] {1, 2, 3, 4, 5});
+
+  @Test
+  public void shouldTrackGroupSizes() {
+    Assert.assertEquals(15, aggregates.getSize(0));
+    Assert.assertEquals(3, aggregates.getSize(a.getIndex()));
+    Assert.assertEquals(12, aggregates.getSize(b.getIndex()));
+
+    aggregates.addSize(3, 10);
+
+    Assert.assertEquals(25, aggregates.getSize(0));
+    Assert.assertEquals(3, aggregates.getSize(a.getIndex()));
+    Assert.assertEquals(22, aggregates.getSize(b.getIndex()));
+  }
+
+  @Test
+  public void shouldTrackGroupWeights() {
+    Assert.assertEquals(5.0, aggregates.getWeight(0));
+
+    aggregates.setWeight(0, 0.1);
+    aggregates.setWeight(1, 0.2);
+
+    Assert.assertEquals(0.1 + 0.2 + 1.0 + 1.0 + 1.0, aggregates.getWeight(0));
+    Assert.assertEquals(0.1 + 0.2, aggregates.getWeight(a.getIndex()));
+    Assert.assertEquals(3.0, aggregates.getWeight(b.getIndex()));
+    Assert.assertEquals(0.2, weights[1]);
+  }
+
+  @Test
+  public void shouldSumGroupWeightsInColumnOrder() {
+    aggregates.setWeight(0, 0.1);
+    aggregates.setWeight(1, 0.2);
+    aggregates.setWeight(2, 0.3);
+    aggregates.setWeight(0, 0.7);
+
+    /*
+     * Adding the changes to the previous total would result in 3.1999999999999997.
+     */
+
+    Assert.assertEquals(0.7 + 0.2 + 0.3 + 1.0 + 1.0, aggregates.getWeight(0));
+  }
+
+  @Test
+  public void shouldCountUnfixedColumns() {
+    aggregates.setWeight(2, 0);
+    aggregates.setWeight(3, 0);
+
+    Assert.assertEquals(3, aggregates.getUnfixedCount(0, 5, 5));
+    Assert.assertEquals(1, aggregates.getUnfixedCount(b.getIndex(), 0, 1));
+    Assert.assertEquals(0, aggregates.getUnfixedCount(b.getIndex(), 4, 4));
+    Assert.assertEquals(1, aggregates.getUnfixedCount(0, 0, 3));
+
+    aggregates.setWeight(3, 2.0);
+
+    Assert.assertEquals(2, aggregates.getUnfixedCount(b.getIndex(), 0, 1));
+  }
+
+  @Test
+  public void shouldCalculateSameGroupStandardWeightAsLoopingSpaceDistributor() {
+    int[] sizes = new int[] {1, 2, 3, 4, 5};
+
+    aggregates.setWeight(4, 3.0);
+
+    for(int j = 0; j < weights.length; j++) {
+      Assert.assertEquals(LoopingSpaceDistributor.calculateGroupStandardWeight(root.getGroup(j), weights, sizes), aggregates.calculateGroupStandardWeight(j));
+    }
+  }
+
+  private static double[] createWeights(int columnCount) {
+    double[] weights = new double[columnCount];
+
+    Arrays.fill(weights, 1.0);
+
+    return weights;
+  }
+}
@@ -0,0 +1,87 @@
+package hs.smartlayout.multicolumn;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class IndexedHeapTest {
+
+  @Test
+  public void shouldReturnLowestKeyFirst() {
+    IndexedHeap heap = new IndexedHeap(new double[] {5, 3, Double.NaN, 3, -1});
+
+    Assert.assertEquals(4, heap.poll());
+    Assert.assertEquals(1, heap.poll());
+    Assert.assertEquals(3, heap.poll());
+    Assert.assertEquals(0, heap.poll());
+    Assert.assertEquals(Double.POSITIVE_INFINITY, heap.getKey(heap.peek()));
+    Assert.assertEquals(2, heap.poll());
+    Assert.assertTrue(heap.isEmpty());
+  }
+
+  @Test
+  public void shouldTreatZeroAndNegativeZeroAsEqual() {
+    IndexedHeap heap = new IndexedHeap(new double[] {0.0, -0.0});
+
+    Assert.assertEquals(0, heap.poll());
+  }
+
+  @Test
+  public void shouldReorderWhenKeysChange() {
+    IndexedHeap heap = new IndexedHeap(new double[] {1, 2, 3, 4});
+
+    heap.setKey(3, 0);
+    heap.setKey(0, 10);
+
+    Assert.assertTrue(heap.contains(3));
+    Assert.assertEquals(3, heap.poll());
+    Assert.assertFalse(heap.contains(3));
+    Assert.assertEquals(1, heap.poll());
+    Assert.assertEquals(2, heap.poll());
+    Assert.assertEquals(0, heap.poll());
+  }
+
+  @Test
+  public void shouldMatchLinearSearch() {
+    Random random = new Random(1);
+    int count = 200;
+    double[] keys = new double[count];
+    boolean[] removed = new boolean[count];
+
+    for(int i = 0; i < count; i++) {
+      keys[i] = random.nextInt(50);
+    }
+
+    IndexedHeap heap = new IndexedHeap(keys);
+
+    for(int remaining = count; remaining > 0; remaining--) {
+      int changeCount = random.nextInt(remaining);
+      int[] indices = new int[changeCount];
+      double[] newKeys = new double[changeCount];
+      int n = 0;
+
+      for(int i = 0; i < count && n < changeCount; i++) {
+        if(!removed[i] && random.nextBoolean()) {
+          indices[n] = i;
+          newKeys[n] = random.nextInt(50);
+          keys[i] = newKeys[n++];
+        }
+      }
+
+      heap.setKeys(indices, newKeys, n);
+
+      int expected = -1;
+
+      for(int i = 0; i < count; i++) {
+        if(!removed[i] && (expected == -1 || keys[i] < keys[expected])) {
+          expected = i;
+        }
+      }
+
+      Assert.assertEquals(expected, heap.poll());
+      removed[expected] = true;
+    }
+  }
+}
@@ -1,12 +1,12 @@
 package hs.smartlayout.multicolumn;
 
-import hs.smartlayout.distributor.SpaceDistributor;
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
 import hs.smartlayout.multicolumn.LoopingSpaceDistributor;
 
 public class LoopingSpaceDistributorTest extends MultiColumnSpaceDistributorTest {
 
   @Override
-  protected SpaceDistributor getSpaceDistributor() {
+  protected AbstractSpaceDistributor getSpaceDistributor() {
     return new LoopingSpaceDistributor();
   }
 
@@ -0,0 +1,115 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MinimumSolverCacheTest {
+  private final MinimumSolverCache cache = new MinimumSolverCache();
+
+  @Test
+  public void shouldReturnSameResultAsMinimumSolver() {
+    List<Limit> limits = Arrays.asList(
+      new Limit(0).min(10).weight(2),
+      new Limit(1).max(5),
+      new Limit(0, 2).min(40)
+    );
+
+    int[] expected = new int[3];
+    int[] sizes = new int[3];
+    double[] weights = createWeights(3);
+
+    int expectedSpaceUsed = MinimumSolver.fixMinimums(expected, createWeights(3), Group.create(3), limits);
+    int spaceUsed = cache.fixMinimums(sizes, weights, Group.create(3), limits);
+
+    Assert.assertEquals(expectedSpaceUsed, spaceUsed);
+    Assert.assertEquals(Arrays.toString(expected), Arrays.toString(sizes));
+    Assert.assertEquals(2.0, weights[0]);
+  }
+
+  @Test
+  public void shouldNotSolveAgainWhenNothingChanged() {
+    List<Limit> limits = Arrays.asList(
+      new Limit(0).min(10).weight(2),
+      new Limit(0, 2).min(40)
+    );
+
+    int[] first = new int[3];
+    int[] second = new int[3];
+    double[] weights = createWeights(3);
+
+    cache.fixMinimums(first, createWeights(3), Group.create(3), limits);
+    first[1] = 1000;  // changes to the result should not affect the cache
+
+    int spaceUsed = cache.fixMinimums(second, weights, Group.create(3), limits);
+
+    Assert.assertEquals(1, cache.getSolveCount());
+    Assert.assertEquals(40, spaceUsed);
+    Assert.assertEquals(40, second[0] + second[1] + second[2]);
+    Assert.assertEquals(2.0, weights[0]);
+  }
+
+  @Test
+  public void shouldKeepUsingCachedResultWhenNothingChanged() {
+    List<Limit> limits = Arrays.asList(new Limit(0, 2).min(40));
+    Group groups = Group.create(new Group(1), new Group(2));
+
+    for(int i = 0; i < 5; i++) {
+      Assert.assertEquals(40, cache.fixMinimums(new int[3], createWeights(3), groups, limits));
+    }
+
+    Assert.assertEquals(1, cache.getSolveCount());
+  }
+
+  @Test
+  public void shouldSolveAgainWhenLimitIsChanged() {
+    Limit limit = new Limit(0, 1).min(20);
+    List<Limit> limits = Arrays.asList(limit);
+    int[] sizes = new int[2];
+
+    Assert.assertEquals(20, cache.fixMinimums(sizes, createWeights(2), Group.create(2), limits));
+
+    limit.min(30);
+
+    Assert.assertEquals(30, cache.fixMinimums(new int[2], createWeights(2), Group.create(2), limits));
+
+    limit.weight(2);
+
+    Assert.assertEquals(30, cache.fixMinimums(new int[2], createWeights(2), Group.create(2), limits));
+    Assert.assertEquals(3, cache.getSolveCount());
+  }
+
+  @Test
+  public void shouldSolveAgainWhenGroupsChange() {
+    List<Limit> limits = Arrays.asList(
+      new Limit(0).min(10),
+      new Limit(0, 2).min(40)
+    );
+
+    Group groups = Group.create(new Group(1), new Group(2));
+    int[] expectedSizes = new int[3];
+    int[] sizes = new int[3];
+
+    MinimumSolver.fixMinimums(expectedSizes, createWeights(3), groups, limits);
+
+    cache.fixMinimums(new int[3], createWeights(3), Group.create(3), limits);
+    cache.fixMinimums(sizes, createWeights(3), groups, limits);
+
+    Assert.assertEquals(2, cache.getSolveCount());
+    Assert.assertEquals(Arrays.toString(expectedSizes), Arrays.toString(sizes));
+  }
+
+  private static double[] createWeights(int columnCount) {
+    double[] weights = new double[columnCount];
+
+    Arrays.fill(weights, 1.0);
+
+    return weights;
+  }
+}
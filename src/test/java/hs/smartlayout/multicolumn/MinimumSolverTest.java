@@ -3,7 +3,10 @@ package hs.smartlayout.multicolumn;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import junit.framework.Assert;
 
@@ -122,15 +125,127 @@ public class MinimumSolverTest {
     }
   }
 
+  @Test
+  public void shouldAssignLargeMinimumsSpanningUnweightedColumnsInFewSteps() {
+    List<Limit> limits = Arrays.asList(
+      new Limit(0, 3).min(100000),
+      new Limit(2, 3).min(50000),
+      new Limit(3).max(10).weight(1)
+    );
+
+    int[] sizes = new int[4];
+    int[] expectedSizes = new int[4];
+    double[] weights = new double[] {0, 0, 0, 1};
+    final int[] steps = new int[1];
+
+    LoopingMinimumSolver.fixMinimums(expectedSizes, weights.clone(), Group.create(4), limits);
+
+    int spaceUsed = new MinimumSolver.Solver(sizes, weights, limits, Group.create(4)) {
+      @Override
+      int findNeediestColumn() {
+        steps[0]++;
+
+        return super.findNeediestColumn();
+      }
+    }.fixRest();
+
+    Assert.assertEquals(100000, spaceUsed);
+    Assert.assertEquals("[49999, 1, 49990, 10]", Arrays.toString(expectedSizes));
+    Assert.assertEquals(Arrays.toString(expectedSizes), Arrays.toString(sizes));
+    Assert.assertTrue("steps: " + steps[0], steps[0] < 100);
+  }
+
+  @Test
+  public void shouldAssignSameMinimumsAsLoopingMinimumSolver() {
+    assignRandomMinimums(new Random(1), 1);
+  }
+
+  @Test
+  public void shouldAssignSameMinimumsAsLoopingMinimumSolverWhenColumnsHaveNoWeight() {
+    assignRandomMinimums(new Random(2), 0);
+  }
+
+  /**
+   * Distributes minimums for random limits and groups, with column weights starting at the given
+   * minimum weight.
+   */
+  private void assignRandomMinimums(Random random, int minimumWeight) {
+    for(int i = 0; i < 500; i++) {
+      int columnCount = 1 + random.nextInt(8);
+      List<Limit> limits = new ArrayList<Limit>();
+
+      for(int j = 0; j < columnCount; j++) {
+        if(random.nextInt(3) > 0) {
+          Limit limit = new Limit(j).weight(minimumWeight + random.nextInt(3));
+
+          if(random.nextInt(3) == 0) {
+            limit.min(random.nextInt(20));
+          }
+          if(random.nextInt(3) == 0) {
+            limit.max(random.nextInt(30));
+          }
+
+          limits.add(limit);
+        }
+      }
+
+      for(int e = 1 + random.nextInt(3); e > 0; e--) {
+        int start = random.nextInt(columnCount);
+        Limit limit = new Limit(start, start + random.nextInt(columnCount - start));
+
+        limits.add(random.nextBoolean() ? limit.min(random.nextInt(i < 400 ? 100 : 5000)) : limit.max(random.nextInt(60)));
+      }
+
+      Solver solver = new Solver(columnCount, limits.toArray(new Limit[limits.size()]));
+
+      solver.setGroups(Group.create(createRandomGroup(random, columnCount, 2)));
+
+      distribute(new int[columnCount], solver);
+    }
+  }
+
+  /**
+   * Distributes the minimums, and verifies the result matches that of {@link LoopingMinimumSolver}.
+   */
   private static int distribute(int[] sizes, Solver solver) {
-    Column[] columns = new Column[sizes.length];
+    double[] weights = createWeights(sizes.length);
+    double[] expectedWeights = createWeights(sizes.length);
+    int[] expectedSizes = sizes.clone();
+
+    int expectedSpaceUsed = LoopingMinimumSolver.fixMinimums(expectedSizes, expectedWeights, solver.rootGroup, Arrays.asList(solver.restrictions));
+    int spaceUsed = MinimumSolver.fixMinimums(sizes, weights, solver.rootGroup, Arrays.asList(solver.restrictions));
+
+    Assert.assertEquals(Arrays.toString(expectedSizes), Arrays.toString(sizes));
+    Assert.assertEquals(expectedSpaceUsed, spaceUsed);
+
+    return spaceUsed;
+  }
+
+  private static double[] createWeights(int columnCount) {
+    double[] weights = new double[columnCount];
+
+    Arrays.fill(weights, 1.0);
+
+    return weights;
+  }
+
+  private static Group createRandomGroup(Random random, int columnCount, int depth) {
+    if(depth == 0 || columnCount < 2 || random.nextInt(3) == 0) {
+      return new Group(columnCount);
+    }
+
+    int parts = 2 + random.nextInt(Math.min(3, columnCount - 1));
+    Group[] groups = new Group[parts];
+    int columnsLeft = columnCount;
+
+    for(int i = 0; i < parts; i++) {
+      int size = i == parts - 1 ? columnsLeft : 1 + random.nextInt(columnsLeft - (parts - i - 1));
 
-    for(int i = 0; i < sizes.length; i++) {
-      columns[i] = new Column(i);
-      columns[i].weight = 1.0;
+      columnsLeft -= size;
+      groups[i] = createRandomGroup(random, size, depth - 1);
     }
 
-    return MinimumSolver.fixMinimums(sizes, columns, solver.rootGroup, Arrays.asList(solver.restrictions));
+    return new Group(groups);
   }
 
   public class Solver {
@@ -5,6 +5,11 @@ import hs.smartlayout.StandardSpaceDistributorTest;
 import hs.smartlayout.distributor.Group;
 import hs.smartlayout.distributor.Limit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
 public abstract class MultiColumnSpaceDistributorTest extends StandardSpaceDistributorTest {
@@ -583,4 +588,48 @@ public abstract class MultiColumnSpaceDistributorTest extends StandardSpaceDistr
       }
     }
   }
+
+  @Test
+  public void shouldDistributeAllSpacesLikeOneByOneForMultiColumnLimits() {
+    Random random = new Random(1);
+    Group rootGroup = Group.create(new Group(2), new Group(new Group(1), new Group(2)));
+
+    for(int i = 0; i < 100; i++) {
+      List<Limit> limits = new ArrayList<Limit>();
+
+      for(int j = 0; j < 5; j++) {
+        Limit limit = new Limit(j).weight(1 + random.nextInt(3));
+
+        if(random.nextInt(3) == 0) {
+          limit.min(random.nextInt(20));
+        }
+        if(random.nextInt(3) == 0) {
+          limit.max(random.nextInt(30));
+        }
+
+        limits.add(limit);
+      }
+
+      for(int e = random.nextInt(3); e > 0; e--) {
+        int start = random.nextInt(5);
+        Limit limit = new Limit(start, start + random.nextInt(5 - start));
+
+        limits.add(random.nextBoolean() ? limit.min(random.nextInt(40)) : limit.max(random.nextInt(40)));
+      }
+
+      int[] spaces = new int[20];
+
+      for(int k = 0; k < spaces.length; k++) {
+        spaces[k] = random.nextInt(150);
+      }
+
+      int[][] results = getSpaceDistributor().distributeAll(spaces, 5, limits, rootGroup);
+
+      for(int k = 0; k < spaces.length; k++) {
+        int[] expected = getSpaceDistributor().distribute(spaces[k], 5, limits, rootGroup);
+
+        Assert.assertEquals("problem " + i + ", space " + spaces[k], Arrays.toString(expected), Arrays.toString(results[k]));
+      }
+    }
+  }
 }
@@ -0,0 +1,138 @@
+package hs.smartlayout.multicolumn;
+
+import hs.smartlayout.distributor.AbstractSpaceDistributor;
+import hs.smartlayout.distributor.Group;
+import hs.smartlayout.distributor.Limit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WaterFillingSpaceDistributorTest extends MultiColumnSpaceDistributorTest {
+
+  @Override
+  protected AbstractSpaceDistributor getSpaceDistributor() {
+    return new WaterFillingSpaceDistributor();
+  }
+
+  @Test
+  public void shouldDistributeExactlyLikeLoopingSpaceDistributor() {
+    Random random = new Random(1);
+
+    for(int i = 0; i < 500; i++) {
+      int columnCount = 1 + random.nextInt(8);
+      List<Limit> limits = new ArrayList<Limit>();
+
+      for(int j = 0; j < columnCount; j++) {
+        Limit limit = new Limit(j).weight(1 + random.nextInt(3));
+
+        if(random.nextInt(3) == 0) {
+          limit.min(random.nextInt(20));
+        }
+        if(random.nextInt(3) == 0) {
+          limit.max(random.nextInt(30));
+        }
+
+        limits.add(limit);
+      }
+
+      for(int e = random.nextInt(3); e > 0; e--) {
+        int start = random.nextInt(columnCount);
+        Limit limit = new Limit(start, start + random.nextInt(columnCount - start));
+
+        limits.add(random.nextBoolean() ? limit.min(random.nextInt(40)) : limit.max(random.nextInt(40)));
+      }
+
+      Group rootGroup = Group.create(createRandomGroup(random, columnCount, 2));
+
+      for(int space = 0; space <= 150; space += 1 + random.nextInt(7)) {
+        int[] expected = new LoopingSpaceDistributor().distribute(space, columnCount, limits, rootGroup);
+        int[] sizes = new WaterFillingSpaceDistributor().distribute(space, columnCount, limits, rootGroup);
+
+        Assert.assertEquals("problem " + i + ", space " + space, Arrays.toString(expected), Arrays.toString(sizes));
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotScoreEveryColumnForEachPixel() {
+    double scoresPerPixel = countScoresPerPixel(100);
+    double scoresPerPixelForMoreColumns = countScoresPerPixel(800);
+
+    /*
+     * Scoring every column for each pixel would make the scores per pixel grow eightfold.
+     */
+
+    Assert.assertTrue(scoresPerPixel + " vs " + scoresPerPixelForMoreColumns, scoresPerPixelForMoreColumns < scoresPerPixel * 4);
+  }
+
+  /*
+   * Returns the number of times the group score of a column was calculated per pixel, which is
+   * done for each column the pixel loop considers.
+   */
+  private static double countScoresPerPixel(int columnCount) {
+    Random random = new Random(1);
+    List<Limit> limits = new ArrayList<Limit>();
+
+    for(int j = 0; j < columnCount; j++) {
+      Limit limit = new Limit(j).weight(1 + random.nextInt(3));
+
+      if(random.nextInt(4) == 0) {
+        limit.min(random.nextInt(20));
+      }
+      if(random.nextInt(4) == 0) {
+        limit.max(10 + random.nextInt(30));
+      }
+
+      limits.add(limit);
+    }
+
+    for(int j = 0; j + 8 < columnCount; j += 8) {
+      limits.add(new Limit(j, j + 7).min(random.nextInt(100)));
+    }
+
+    final long[] scoreCount = new long[1];
+    int space = columnCount * 20;
+
+    WaterFillingSpaceDistributor distributor = new WaterFillingSpaceDistributor() {
+      @Override
+      Solver createSolver(int[] sizes, double[] weights, double[] weightOffsets, List<Limit> limits, Group rootGroup) {
+        return new Solver(sizes, weights, weightOffsets, limits, rootGroup) {
+          @Override
+          protected double calculateGroupStandardWeight(int column) {
+            scoreCount[0]++;
+
+            return super.calculateGroupStandardWeight(column);
+          }
+        };
+      }
+    };
+
+    distributor.distribute(space, columnCount, limits, Group.create(columnCount));
+
+    return (double)scoreCount[0] / space;
+  }
+
+  private static Group createRandomGroup(Random random, int columnCount, int depth) {
+    if(depth == 0 || columnCount < 2 || random.nextInt(3) == 0) {
+      return new Group(columnCount);
+    }
+
+    int parts = 2 + random.nextInt(Math.min(3, columnCount - 1));
+    Group[] groups = new Group[parts];
+    int columnsLeft = columnCount;
+
+    for(int i = 0; i < parts; i++) {
+      int size = i == parts - 1 ? columnsLeft : 1 + random.nextInt(columnsLeft - (parts - i - 1));
+
+      columnsLeft -= size;
+      groups[i] = createRandomGroup(random, size, depth - 1);
+    }
+
+    return new Group(groups);
+  }
+}